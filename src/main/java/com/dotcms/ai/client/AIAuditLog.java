@@ -0,0 +1,246 @@
+package com.dotcms.ai.client;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.json.JSONArray;
+import com.dotmarketing.util.json.JSONObject;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a sample of the completion requests and responses to the {@code AIAuditLog} logger, one line per call with
+ * the operation, host, model, latency and token counts.  On the request thread the prompt is only cut down in a
+ * single pass - base64 data replaced by its length and long strings cut off, so a queued entry holds a few KB
+ * rather than the image - and queued.  The response is truncated and everything is formatted by a single
+ * background thread, and when the queue is full the entry is dropped rather than slowing the call down.  With {@link #AI_AUDIT_LOG_SAMPLE_PERCENT} at 0 (the default) nothing is
+ * queued at all.
+ */
+public class AIAuditLog {
+
+    /**
+     * percentage of successful calls that are logged, failed calls are always logged unless this is 0
+     */
+    public static final String AI_AUDIT_LOG_SAMPLE_PERCENT = "AI_AUDIT_LOG_SAMPLE_PERCENT";
+
+    public static final String AI_AUDIT_LOG_QUEUE_SIZE = "AI_AUDIT_LOG_QUEUE_SIZE";
+
+    /**
+     * string values in the prompt and response longer than this are cut off
+     */
+    public static final String AI_AUDIT_LOG_MAX_FIELD_CHARS = "AI_AUDIT_LOG_MAX_FIELD_CHARS";
+
+    public static final Lazy<AIAuditLog> instance = Lazy.of(AIAuditLog::new);
+
+    private static final String BASE64_MARKER = ";base64,";
+
+    private final int samplePercent;
+
+    private final int maxFieldChars;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Lazy<Thread> writer = Lazy.of(this::startWriter);
+
+    private static class Entry {
+
+        final AIOperation operation;
+        final String hostId;
+        final String prompt;
+        final JSONObject response;
+        final Throwable error;
+        final long millis;
+
+        Entry(AIOperation operation, String hostId, String prompt, JSONObject response, Throwable error,
+                long millis) {
+            this.operation = operation;
+            this.hostId = hostId;
+            this.prompt = prompt;
+            this.response = response;
+            this.error = error;
+            this.millis = millis;
+        }
+    }
+
+    AIAuditLog() {
+        this.samplePercent = Math.max(0, Math.min(100, AIUtil.getIntProperty(AI_AUDIT_LOG_SAMPLE_PERCENT, 0)));
+        this.maxFieldChars = AIUtil.getIntProperty(AI_AUDIT_LOG_MAX_FIELD_CHARS, 500);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, AIUtil.getIntProperty(AI_AUDIT_LOG_QUEUE_SIZE, 1000)));
+    }
+
+    public boolean isEnabled() {
+        return samplePercent > 0;
+    }
+
+    /**
+     * Queues a successful call if it is sampled
+     * @param prompt the prompt as it was sent
+     */
+    void success(AIOperation operation, String hostId, String prompt, JSONObject response, long millis) {
+        if (samplePercent == 0 || ThreadLocalRandom.current().nextInt(100) >= samplePercent) {
+            return;
+        }
+        offer(new Entry(operation, hostId, shrink(prompt), response, null, millis));
+    }
+
+    /**
+     * Queues a failed call
+     */
+    void failure(AIOperation operation, String hostId, String prompt, Throwable error, long millis) {
+        if (samplePercent == 0) {
+            return;
+        }
+        offer(new Entry(operation, hostId, shrink(prompt), null, error, millis));
+    }
+
+    private void offer(Entry entry) {
+        writer.get();
+        if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private Thread startWriter() {
+        final Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    final Entry entry = queue.take();
+                    Try.run(() -> Logger.info(AIAuditLog.class, format(entry)))
+                            .onFailure(e -> Logger.debug(AIAuditLog.class, "Unable to audit call: " + e.getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "dotai-audit");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private String format(Entry entry) {
+        final JSONObject prompt = Try.of(() -> new JSONObject(entry.prompt)).getOrElse(JSONObject::new);
+        final JSONObject usage = entry.response == null ? null : entry.response.optJSONObject("usage");
+        final StringBuilder line = new StringBuilder()
+                .append("op=").append(entry.operation)
+                .append(" host=").append(entry.hostId)
+                .append(" model=").append(prompt.optString("model"))
+                .append(" status=").append(entry.error == null ? "ok" : "error")
+                .append(" latencyMs=").append(entry.millis);
+        if (usage != null) {
+            line.append(" promptTokens=").append(usage.optLong("prompt_tokens"))
+                    .append(" completionTokens=").append(usage.optLong("completion_tokens"))
+                    .append(" totalTokens=").append(usage.optLong("total_tokens"));
+        }
+        if (entry.error != null) {
+            line.append(" error=").append(truncate(String.valueOf(entry.error.getMessage())));
+        }
+        line.append(" prompt=").append(truncate(prompt));
+        if (entry.response != null) {
+            line.append(" response=").append(truncate(entry.response));
+        }
+        return line.toString();
+    }
+
+    /**
+     * The prompt json with its long strings cut off and base64 data replaced by its length, done in one pass over the
+     * text without parsing it, so it is cheap enough for the request thread.  The result is still valid json.
+     */
+    String shrink(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        final StringBuilder out = new StringBuilder(Math.min(prompt.length(), 4096));
+        int i = 0;
+        while (i < prompt.length()) {
+            final char c = prompt.charAt(i++);
+            out.append(c);
+            if (c != '"') {
+                continue;
+            }
+            // i is the first char of a string literal, find its closing quote
+            int end = i;
+            while (end < prompt.length() && prompt.charAt(end) != '"') {
+                end += prompt.charAt(end) == '\\' ? 2 : 1;
+            }
+            end = Math.min(end, prompt.length());
+            final int base64 = prompt.substring(i, Math.min(end, i + 100)).indexOf(BASE64_MARKER);
+            if (base64 > 0) {
+                final int dataStart = i + base64 + BASE64_MARKER.length();
+                out.append(prompt, i, dataStart).append('<').append(end - dataStart).append(" chars>");
+            } else if (end - i > maxFieldChars) {
+                int cut = i + maxFieldChars;
+                // do not leave a lone backslash that would escape the closing quote
+                int backslashes = 0;
+                while (cut - backslashes - 1 >= i && prompt.charAt(cut - backslashes - 1) == '\\') {
+                    backslashes++;
+                }
+                cut -= backslashes % 2;
+                out.append(prompt, i, cut).append("...<").append(end - cut).append(" more chars>");
+            } else {
+                out.append(prompt, i, end);
+            }
+            if (end < prompt.length()) {
+                out.append('"');
+            }
+            i = end + 1;
+        }
+        return out.toString();
+    }
+
+    /**
+     * A copy of the json with long strings cut off and base64 data replaced by its length
+     */
+    Object truncate(Object value) {
+        if (value instanceof JSONObject) {
+            final JSONObject json = (JSONObject) value;
+            final JSONObject copy = new JSONObject();
+            final Iterator<?> keys = json.keys();
+            while (keys.hasNext()) {
+                final String key = (String) keys.next();
+                copy.put(key, truncate(json.get(key)));
+            }
+            return copy;
+        }
+        if (value instanceof JSONArray) {
+            final JSONArray array = (JSONArray) value;
+            final JSONArray copy = new JSONArray();
+            for (int i = 0; i < array.length(); i++) {
+                copy.put(truncate(array.get(i)));
+            }
+            return copy;
+        }
+        if (value instanceof String) {
+            return truncate((String) value);
+        }
+        return value;
+    }
+
+    String truncate(String value) {
+        final int base64 = value.indexOf(BASE64_MARKER);
+        if (base64 > 0 && base64 < 100) {
+            final int dataStart = base64 + BASE64_MARKER.length();
+            return value.substring(0, dataStart) + "<" + (value.length() - dataStart) + " chars>";
+        }
+        if (value.length() <= maxFieldChars) {
+            return value;
+        }
+        return value.substring(0, maxFieldChars) + "...<" + (value.length() - maxFieldChars) + " more chars>";
+    }
+
+    public void shutdown() {
+        if (writer.isEvaluated()) {
+            writer.get().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.dotcms.ai.client;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.json.JSONObject;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * All of the plugin's completion calls go through here rather than calling {@code CompletionsAPI.raw} directly.
+ * Each call gets a deadline based on its {@link AIOperation} and, if hedging is enabled for the host, a duplicate
+ * request is fired when the first one has not answered by the observed p95 latency.  The first successful
+ * response wins and the other request is cancelled.  Requests are also checked against, and counted towards, the
+ * host's {@link TokenBudget}.  Calls are queued in the calling thread's {@link AIPriority} lane, so interactive
+ * requests are not stuck behind a backfill.
+ */
+public class AICompletionClient {
+
+    /**
+     * Percentage of requests that may be hedged, 0 disables hedging
+     */
+    public static final String AI_HEDGE_PERCENT = "AI_HEDGE_PERCENT";
+
+    public static final String AI_COMPLETION_THREADS = "AI_COMPLETION_THREADS";
+
+    /**
+     * we need this many samples before we trust the p95 enough to hedge on it
+     */
+    static final int MIN_SAMPLES_TO_HEDGE = 20;
+
+    public static final Lazy<AICompletionClient> instance = Lazy.of(AICompletionClient::new);
+
+    private final PriorityLaneExecutor executor;
+
+    private final CompletionTransport dotAITransport = new DotAICompletionTransport();
+
+    private final Lazy<HttpCompletionTransport> httpTransport = Lazy.of(HttpCompletionTransport::new);
+
+    /**
+     * when set, used for every host regardless of config, e.g. to point the client at a mock server
+     */
+    private volatile CompletionTransport transportOverride;
+
+    private final Map<AIOperation, LatencyTracker> latencies = new EnumMap<>(AIOperation.class);
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    AICompletionClient() {
+        this(null);
+    }
+
+    AICompletionClient(CompletionTransport transportOverride) {
+        this.transportOverride = transportOverride;
+        this.executor = new PriorityLaneExecutor("dotai-completion", AIUtil.getIntProperty(AI_COMPLETION_THREADS, 16));
+        for (AIOperation operation : AIOperation.values()) {
+            latencies.put(operation, new LatencyTracker(500));
+        }
+    }
+
+    /**
+     * Sends the prompt to the completions endpoint and waits for the response, up to the operation's deadline.
+     * @param prompt
+     * @param hostId host whose config (deadline, hedging) applies
+     * @param operation
+     * @return
+     */
+    public JSONObject raw(JSONObject prompt, String hostId, AIOperation operation) {
+
+        final long start = System.currentTimeMillis();
+        final long deadline = start + TimeUnit.SECONDS.toMillis(
+                AIUtil.getIntSecret(hostId, operation.deadlineKey, operation.defaultDeadlineSeconds));
+        final TokenBudget budget = TokenBudget.instance.get();
+        final JSONObject applied = budget.apply(prompt, hostId);
+        final String model = applied.optString("model");
+        final String promptString = applied.toString();
+        final CompletionTransport transport = transport(hostId);
+        final Callable<JSONObject> call = () -> {
+            try {
+                return transport.send(new JSONObject(promptString), hostId);
+            } finally {
+                DbConnectionFactory.closeSilently();
+            }
+        };
+
+        final AIPriority priority = AIPriority.current();
+        requests.incrementAndGet();
+        final BlockingQueue<Future<JSONObject>> completed = new LinkedBlockingQueue<>();
+        final List<Future<JSONObject>> inFlight = new ArrayList<>();
+        inFlight.add(executor.submit(call, priority, completed));
+
+        Exception lastError = null;
+        try {
+            final long hedgeAfter = hedgeDelay(hostId, operation);
+            if (hedgeAfter > 0 && hedgeAfter < deadline - start) {
+                Future<JSONObject> first = completed.poll(hedgeAfter, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    inFlight.remove(first);
+                    try {
+                        return record(operation, hostId, model, start, promptString, first.get());
+                    } catch (ExecutionException e) {
+                        lastError = e;
+                    }
+                }
+                if (first == null) {
+                    hedges.incrementAndGet();
+                    Logger.debug(this.getClass(), () -> operation + " call slower than p95 (" + hedgeAfter
+                            + "ms), hedging");
+                }
+                // a failed first attempt is retried within the deadline but is not a hedge
+                inFlight.add(executor.submit(call, priority, completed));
+            }
+
+            while (!inFlight.isEmpty()) {
+                final long remaining = deadline - System.currentTimeMillis();
+                final Future<JSONObject> done = remaining > 0
+                        ? completed.poll(remaining, TimeUnit.MILLISECONDS)
+                        : null;
+                if (done == null) {
+                    throw fail(operation, hostId, start, promptString, new DotRuntimeException(
+                            operation + " completion did not respond within " + (deadline - start) + "ms"));
+                }
+                inFlight.remove(done);
+                try {
+                    return record(operation, hostId, model, start, promptString, done.get());
+                } catch (ExecutionException e) {
+                    lastError = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw fail(operation, hostId, start, promptString, new DotRuntimeException(e));
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+
+        throw fail(operation, hostId, start, promptString,
+                new DotRuntimeException(lastError.getCause() != null ? lastError.getCause() : lastError));
+    }
+
+    /**
+     * Sends every host's calls through the transport, null goes back to each host's configured transport
+     */
+    void overrideTransport(CompletionTransport transport) {
+        this.transportOverride = transport;
+    }
+
+    /**
+     * {@code http} uses the plugin's own pooled HTTP/2 transport, anything else goes through dotAI
+     */
+    CompletionTransport transport(String hostId) {
+        final CompletionTransport override = transportOverride;
+        if (override != null) {
+            return override;
+        }
+        final String configured = Try.of(() -> AIUtil.getSecrets(hostId)
+                .get(CompletionTransport.AI_COMPLETION_TRANSPORT).getString()).getOrElse("dotai");
+        return "http".equalsIgnoreCase(configured) ? httpTransport.get() : dotAITransport;
+    }
+
+    /**
+     * Sets up what the host's first call would otherwise pay for - the token budget and, for the http transport, the
+     * connection to the completions endpoint
+     */
+    public void warmUp(String hostId) {
+        TokenBudget.instance.get();
+        final CompletionTransport transport = transport(hostId);
+        if (transport instanceof HttpCompletionTransport) {
+            ((HttpCompletionTransport) transport).warmUp(hostId);
+        }
+    }
+
+    public Optional<Map<String, Long>> getTransportMetrics() {
+        return httpTransport.isEvaluated() ? Optional.of(httpTransport.get().getMetrics()) : Optional.empty();
+    }
+
+    /**
+     * Returns how long to wait before hedging, or -1 if this call should not be hedged
+     */
+    long hedgeDelay(String hostId, AIOperation operation) {
+        final int hedgePercent = AIUtil.getIntSecret(hostId, AI_HEDGE_PERCENT, 0);
+        if (hedgePercent <= 0) {
+            return -1;
+        }
+        final LatencyTracker tracker = latencies.get(operation);
+        if (tracker.size() < MIN_SAMPLES_TO_HEDGE) {
+            return -1;
+        }
+        if (hedges.get() * 100 >= requests.get() * hedgePercent) {
+            return -1;
+        }
+        return tracker.percentile(95);
+    }
+
+    private JSONObject record(AIOperation operation, String hostId, String model, long start, String prompt,
+            JSONObject response) {
+        final long millis = System.currentTimeMillis() - start;
+        latencies.get(operation).record(millis);
+        TokenBudget.instance.get().record(hostId, model, response);
+        AIAuditLog.instance.get().success(operation, hostId, prompt, response, millis);
+        return response;
+    }
+
+    private DotRuntimeException fail(AIOperation operation, String hostId, long start, String prompt,
+            DotRuntimeException error) {
+        AIAuditLog.instance.get().failure(operation, hostId, prompt, error, System.currentTimeMillis() - start);
+        return error;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.dotcms.ai.client;
+
+/**
+ * The kinds of completion calls this plugin makes.  Each operation has its own deadline and latency history, as a
+ * vision call and a full page translation have very different response times.
+ */
+public enum AIOperation {
+
+    VISION("AI_VISION_DEADLINE_SECONDS", 45),
+    TRANSLATION("AI_TRANSLATION_DEADLINE_SECONDS", 180);
+
+    final String deadlineKey;
+    final int defaultDeadlineSeconds;
+
+    AIOperation(String deadlineKey, int defaultDeadlineSeconds) {
+        this.deadlineKey = deadlineKey;
+        this.defaultDeadlineSeconds = defaultDeadlineSeconds;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.dotcms.ai.client;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Priority lanes for AI work.  Higher lanes are always served first, but each lower lane is guaranteed a minimum
+ * share of the completion workers so a large backfill still makes progress.  The current lane is kept on the
+ * calling thread so it does not need to be passed down through the vision and translation APIs.
+ */
+public enum AIPriority {
+
+    /**
+     * an editor is waiting on the result, e.g. running a workflow action on a single contentlet
+     */
+    INTERACTIVE(0),
+    /**
+     * triggered automatically by a publish
+     */
+    PUBLISH(20),
+    /**
+     * bulk workflow runs and backfills
+     */
+    BULK(10);
+
+    /**
+     * the minimum percentage of recent dispatches this lane gets when it has work queued
+     */
+    final int minSharePercent;
+
+    AIPriority(int minSharePercent) {
+        this.minSharePercent = minSharePercent;
+    }
+
+    private static final ThreadLocal<AIPriority> current = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static AIPriority current() {
+        return current.get();
+    }
+
+    /**
+     * Runs the callable with AI calls made on this thread classified in the given lane
+     */
+    public static <T> T withPriority(AIPriority priority, Callable<T> callable) throws Exception {
+        final AIPriority previous = current.get();
+        current.set(priority);
+        try {
+            return callable.call();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+}
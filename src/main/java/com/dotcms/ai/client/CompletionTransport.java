@@ -0,0 +1,15 @@
+package com.dotcms.ai.client;
+
+import com.dotmarketing.util.json.JSONObject;
+
+/**
+ * How a completion request actually gets to the provider.  {@link AICompletionClient} picks the transport per host
+ * with the {@link #AI_COMPLETION_TRANSPORT} secret.
+ */
+public interface CompletionTransport {
+
+    String AI_COMPLETION_TRANSPORT = "AI_COMPLETION_TRANSPORT";
+
+    JSONObject send(JSONObject prompt, String hostId);
+
+}
@@ -0,0 +1,18 @@
+package com.dotcms.ai.client;
+
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.util.json.JSONObject;
+
+/**
+ * Sends completions through dotCMS's own dotAI {@code CompletionsAPI} - this is the default transport.
+ */
+public class DotAICompletionTransport implements CompletionTransport {
+
+    @Override
+    public JSONObject send(JSONObject prompt, String hostId) {
+        return APILocator.getDotAIAPI()
+                .getCompletionsAPI()
+                .raw(prompt, APILocator.systemUser().getUserId());
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.dotcms.ai.client;
+
+import com.dotcms.ai.app.AppKeys;
+import com.dotcms.ai.util.AIUtil;
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.dotmarketing.util.json.JSONObject;
+import io.vavr.control.Try;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Talks to an OpenAI compatible completions endpoint directly with a single shared {@link HttpClient}, which keeps
+ * connections alive and multiplexes requests over HTTP/2 where the server supports it.  Request bodies can be
+ * gzipped per host with {@link #AI_COMPLETION_GZIP}, for endpoints (or proxies) that accept compressed bodies.
+ * The size and keep-alive of the connection pool are JVM wide settings of the JDK client
+ * ({@code -Djdk.httpclient.connectionPoolSize}, {@code -Djdk.httpclient.keepalive.timeout}) and are left to the
+ * server's JVM options.
+ */
+public class HttpCompletionTransport implements CompletionTransport {
+
+    public static final String AI_COMPLETIONS_URL = "AI_COMPLETIONS_URL";
+
+    public static final String AI_COMPLETION_GZIP = "AI_COMPLETION_GZIP";
+
+    static final String DEFAULT_COMPLETIONS_URL = "https://api.openai.com/v1/chat/completions";
+
+    private final HttpClient client;
+
+    /**
+     * when set, these are used instead of the host's secrets, e.g. to point the transport at a mock server
+     */
+    private final String fixedUrl;
+    private final String fixedApiKey;
+    private final Boolean fixedGzip;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong bytesUncompressed = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public HttpCompletionTransport() {
+        this(null, null, null);
+    }
+
+    public HttpCompletionTransport(String url, String apiKey, Boolean gzip) {
+        this.fixedUrl = url;
+        this.fixedApiKey = apiKey;
+        this.fixedGzip = gzip;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public JSONObject send(JSONObject prompt, String hostId) {
+
+        final byte[] body = prompt.toString().getBytes(StandardCharsets.UTF_8);
+        final boolean gzip = fixedGzip != null ? fixedGzip : Try.of(() -> Boolean.parseBoolean(
+                AIUtil.getSecrets(hostId).get(AI_COMPLETION_GZIP).getString())).getOrElse(false);
+        final byte[] wireBody = gzip ? gzip(body) : body;
+
+        final HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(completionsUrl(hostId)))
+                .header("Content-Type", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .header("Authorization", "Bearer " + apiKey(hostId))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(wireBody));
+        if (gzip) {
+            request.header("Content-Encoding", "gzip");
+        }
+
+        requests.incrementAndGet();
+        inFlight.incrementAndGet();
+        bytesUncompressed.addAndGet(body.length);
+        bytesSent.addAndGet(wireBody.length);
+        try {
+            final HttpResponse<InputStream> response = client.send(request.build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.incrementAndGet();
+            }
+            final String responseBody = readBody(response);
+            if (response.statusCode() < 200 || response.statusCode() > 299) {
+                errors.incrementAndGet();
+                throw new DotRuntimeException("Completion request failed with status " + response.statusCode() + ": "
+                        + responseBody.substring(0, Math.min(500, responseBody.length())));
+            }
+            return new JSONObject(responseBody);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            throw new DotRuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DotRuntimeException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a connection to the host's completions endpoint so the TLS handshake is not paid by the first request.
+     * Any response will do, the connection stays in the client's pool.
+     */
+    public void warmUp(String hostId) {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(completionsUrl(hostId)))
+                .timeout(Duration.ofSeconds(10))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        Try.of(() -> client.send(request, HttpResponse.BodyHandlers.discarding()))
+                .onFailure(e -> Logger.debug(this.getClass(),
+                        "Unable to warm up " + request.uri() + ": " + e.getMessage()));
+    }
+
+    String completionsUrl(String hostId) {
+        if (fixedUrl != null) {
+            return fixedUrl;
+        }
+        if (UtilMethods.isSet(() -> AIUtil.getSecrets(hostId).get(AI_COMPLETIONS_URL).getString())) {
+            return AIUtil.getSecrets(hostId).get(AI_COMPLETIONS_URL).getString();
+        }
+        return DEFAULT_COMPLETIONS_URL;
+    }
+
+    String apiKey(String hostId) {
+        if (fixedApiKey != null) {
+            return fixedApiKey;
+        }
+        return Try.of(() -> AIUtil.getSecrets(hostId).get(AppKeys.API_KEY.key).getString()).getOrElse("");
+    }
+
+    static byte[] gzip(byte[] body) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new DotRuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static String readBody(HttpResponse<InputStream> response) throws IOException {
+        final boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(v -> v.equalsIgnoreCase("gzip")).orElse(false);
+        try (InputStream in = gzipped ? new GZIPInputStream(response.body()) : response.body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Request counters, for monitoring.  The JDK client does not expose its connections, so how many were opened or
+     * reused is not known here - the load test counts them on the mock server.
+     */
+    public Map<String, Long> getMetrics() {
+        final Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.get());
+        metrics.put("errors", errors.get());
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("http2Responses", http2Responses.get());
+        metrics.put("bytesUncompressed", bytesUncompressed.get());
+        metrics.put("bytesSent", bytesSent.get());
+        return metrics;
+    }
+
+}
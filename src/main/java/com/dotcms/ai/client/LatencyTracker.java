@@ -0,0 +1,42 @@
+package com.dotcms.ai.client;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last N latencies of an operation in a ring buffer so we can estimate percentiles cheaply.
+ */
+class LatencyTracker {
+
+    private final long[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    LatencyTracker(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency at the given percentile or -1 if nothing has been recorded yet
+     */
+    synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        final long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100d * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+}
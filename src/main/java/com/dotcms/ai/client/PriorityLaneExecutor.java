@@ -0,0 +1,162 @@
+package com.dotcms.ai.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed pool of workers fed from one queue per {@link AIPriority}.  Workers take from the highest non-empty lane,
+ * unless a lower lane with queued work has had less than its minimum share of the last {@link #WINDOW}
+ * dispatches, in which case that lane is served instead.
+ */
+class PriorityLaneExecutor {
+
+    static final int WINDOW = 100;
+
+    private final Map<AIPriority, ArrayDeque<FutureTask<?>>> lanes = new EnumMap<>(AIPriority.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * ring buffer of the lanes of the last WINDOW dispatches
+     */
+    private final AIPriority[] recent = new AIPriority[WINDOW];
+
+    private final int[] recentCounts = new int[AIPriority.values().length];
+
+    private int recentIndex = 0;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean shutdown = false;
+
+    PriorityLaneExecutor(String name, int threads) {
+        for (AIPriority priority : AIPriority.values()) {
+            lanes.put(priority, new ArrayDeque<>());
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    <T> Future<T> submit(Callable<T> callable, AIPriority priority) {
+        return enqueue(new FutureTask<>(callable), priority);
+    }
+
+    /**
+     * Like an ExecutorCompletionService, the future is added to the completion queue once it is done
+     */
+    <T> Future<T> submit(Callable<T> callable, AIPriority priority, BlockingQueue<Future<T>> completionQueue) {
+        return enqueue(new FutureTask<>(callable) {
+            @Override
+            protected void done() {
+                completionQueue.add(this);
+            }
+        }, priority);
+    }
+
+    private <T> FutureTask<T> enqueue(FutureTask<T> task, AIPriority priority) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+            lanes.get(priority).add(task);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task;
+    }
+
+    int queued(AIPriority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (!shutdown) {
+            final FutureTask<?> task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                if (shutdown) {
+                    return;
+                }
+                continue;
+            }
+            task.run();
+            // a hedge or deadline cancels the losing call with cancel(true), which interrupts this worker - clear
+            // it so the next take() does not throw
+            Thread.interrupted();
+        }
+    }
+
+    private FutureTask<?> take() throws InterruptedException {
+        lock.lock();
+        try {
+            AIPriority lane;
+            while ((lane = nextLane()) == null) {
+                notEmpty.await();
+            }
+            if (recent[recentIndex] != null) {
+                recentCounts[recent[recentIndex].ordinal()]--;
+            }
+            recent[recentIndex] = lane;
+            recentCounts[lane.ordinal()]++;
+            recentIndex = (recentIndex + 1) % WINDOW;
+            return lanes.get(lane).poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * must be called holding the lock
+     */
+    AIPriority nextLane() {
+        for (AIPriority priority : AIPriority.values()) {
+            if (priority.minSharePercent > 0 && !lanes.get(priority).isEmpty()
+                    && recentCounts[priority.ordinal()] * 100 < priority.minSharePercent * WINDOW) {
+                return priority;
+            }
+        }
+        for (AIPriority priority : AIPriority.values()) {
+            if (!lanes.get(priority).isEmpty()) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            lanes.values().forEach(lane -> lane.forEach(task -> task.cancel(false)));
+            lanes.values().forEach(ArrayDeque::clear);
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.dotcms.ai.client;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.util.ConfigUtils;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.dotmarketing.util.json.JSONArray;
+import com.dotmarketing.util.json.JSONObject;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks token spend per host and model from the {@code usage} block of each completion and decides whether a new
+ * request should be let through.  The host budgets apply to the host's usage summed over all models, so switching
+ * to a cheaper model does not start the count again - {@link #AI_TOKEN_BUDGET_MODEL_DAILY} and
+ * {@link #AI_TOKEN_BUDGET_MODEL_MONTHLY} can add limits for single models on top.  Counters live in memory and are
+ * flushed to a json file in the dynamic content folder every minute, so the admission check never hits the db or
+ * disk.
+ */
+public class TokenBudget {
+
+    public static final String AI_TOKEN_BUDGET_DAILY = "AI_TOKEN_BUDGET_DAILY";
+
+    public static final String AI_TOKEN_BUDGET_MONTHLY = "AI_TOKEN_BUDGET_MONTHLY";
+
+    /**
+     * per model daily limits as a comma separated list of {@code model=tokens}, e.g. {@code gpt-4o=200000}
+     */
+    public static final String AI_TOKEN_BUDGET_MODEL_DAILY = "AI_TOKEN_BUDGET_MODEL_DAILY";
+
+    /**
+     * per model monthly limits as a comma separated list of {@code model=tokens}
+     */
+    public static final String AI_TOKEN_BUDGET_MODEL_MONTHLY = "AI_TOKEN_BUDGET_MODEL_MONTHLY";
+
+    /**
+     * once this percentage of a budget is used, requests are downgraded
+     */
+    public static final String AI_TOKEN_BUDGET_THRESHOLD_PERCENT = "AI_TOKEN_BUDGET_THRESHOLD_PERCENT";
+
+    public static final String AI_TOKEN_BUDGET_DOWNGRADE_MODEL = "AI_TOKEN_BUDGET_DOWNGRADE_MODEL";
+
+    public enum Admission {
+        ALLOW,
+        DOWNGRADE,
+        REJECT
+    }
+
+    public static class BudgetExceededException extends DotRuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public BudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * stands in for the model in the keys of the host totals
+     */
+    static final String ALL_MODELS = "*";
+
+    static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    public static final Lazy<TokenBudget> instance = Lazy.of(TokenBudget::new);
+
+    private final Map<String, AtomicLong> usage = new ConcurrentHashMap<>();
+
+    private final File storeFile;
+
+    private final ScheduledExecutorService flusher;
+
+    TokenBudget() {
+        this(new File(ConfigUtils.getDynamicContentPath() + File.separator + "dotai" + File.separator
+                + "token-budget.json"));
+    }
+
+    TokenBudget(File storeFile) {
+        this.storeFile = storeFile;
+        load();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dotai-token-budget");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::persist, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * The strictest decision of the host budgets, checked against the host's usage over all models, and the limits
+     * of the given model, checked against that model's usage
+     */
+    public Admission admit(String hostId, String model) {
+        final long daily = AIUtil.getLongSecret(hostId, AI_TOKEN_BUDGET_DAILY, 0);
+        final long monthly = AIUtil.getLongSecret(hostId, AI_TOKEN_BUDGET_MONTHLY, 0);
+        final long modelDaily = modelLimit(hostId, AI_TOKEN_BUDGET_MODEL_DAILY, model);
+        final long modelMonthly = modelLimit(hostId, AI_TOKEN_BUDGET_MODEL_MONTHLY, model);
+        if (daily <= 0 && monthly <= 0 && modelDaily <= 0 && modelMonthly <= 0) {
+            return Admission.ALLOW;
+        }
+        final int threshold = AIUtil.getIntSecret(hostId, AI_TOKEN_BUDGET_THRESHOLD_PERCENT, 80);
+        final LocalDate today = LocalDate.now();
+        final Admission host = admit(daily, used(dayKey(hostId, ALL_MODELS, today)), monthly,
+                used(monthKey(hostId, ALL_MODELS, today)), threshold);
+        final Admission single = admit(modelDaily, used(dayKey(hostId, model, today)), modelMonthly,
+                used(monthKey(hostId, model, today)), threshold);
+        return host.compareTo(single) >= 0 ? host : single;
+    }
+
+    static Admission admit(long daily, long usedToday, long monthly, long usedThisMonth, int threshold) {
+        if ((daily > 0 && usedToday >= daily) || (monthly > 0 && usedThisMonth >= monthly)) {
+            return Admission.REJECT;
+        }
+        if ((daily > 0 && usedToday * 100 >= daily * threshold)
+                || (monthly > 0 && usedThisMonth * 100 >= monthly * threshold)) {
+            return Admission.DOWNGRADE;
+        }
+        return Admission.ALLOW;
+    }
+
+    /**
+     * The model's limit from a {@code model=tokens} list secret, 0 if it has none
+     */
+    static long modelLimit(String hostId, String key, String model) {
+        for (String entry : AIUtil.getStringSecret(hostId, key, "").split(",")) {
+            final String[] parts = entry.split("=");
+            if (parts.length == 2 && parts[0].trim().equalsIgnoreCase(model)) {
+                return Try.of(() -> Long.parseLong(parts[1].trim())).getOrElse(0L);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Applies the admission decision to the prompt - downgraded requests are switched to the host's cheaper model
+     * (if one is configured) and any images are sent at low detail.  The prompt passed in is left as it is, a
+     * downgraded request is a copy.  Throws a {@link BudgetExceededException} if the budget is exhausted.
+     * @param prompt
+     * @param hostId
+     * @return
+     */
+    public JSONObject apply(JSONObject prompt, String hostId) {
+        final String model = prompt.optString("model");
+        final Admission admission = admit(hostId, model);
+        if (admission == Admission.ALLOW) {
+            return prompt;
+        }
+        if (admission == Admission.REJECT) {
+            throw new BudgetExceededException("Token budget exhausted for host:" + hostId + " model:" + model);
+        }
+
+        final JSONObject downgraded = new JSONObject(prompt.toString());
+        final String cheaperModel = Try.of(() -> AIUtil.getSecrets(hostId).get(AI_TOKEN_BUDGET_DOWNGRADE_MODEL)
+                .getString()).getOrNull();
+        if (UtilMethods.isSet(cheaperModel) && admit(hostId, cheaperModel) != Admission.REJECT) {
+            downgraded.put("model", cheaperModel);
+        }
+        lowerImageDetail(downgraded);
+        Logger.debug(this.getClass(), () -> "Downgraded request for host:" + hostId + " to "
+                + downgraded.optString("model"));
+        return downgraded;
+    }
+
+    void lowerImageDetail(JSONObject prompt) {
+        final JSONArray messages = prompt.optJSONArray("messages");
+        if (messages == null) {
+            return;
+        }
+        for (int i = 0; i < messages.length(); i++) {
+            final JSONArray content = messages.getJSONObject(i).optJSONArray("content");
+            if (content == null) {
+                continue;
+            }
+            for (int j = 0; j < content.length(); j++) {
+                final JSONObject imageUrl = content.getJSONObject(j).optJSONObject("image_url");
+                if (imageUrl != null) {
+                    imageUrl.put("detail", "low");
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the tokens used by a completion response
+     * @param hostId
+     * @param model the model of the prompt as it was sent - the response names a dated model version, which would
+     *              not match what {@link #admit} is asked about
+     * @param response
+     */
+    public void record(String hostId, String model, JSONObject response) {
+        final JSONObject usageJson = response.optJSONObject("usage");
+        if (usageJson == null) {
+            return;
+        }
+        final long tokens = usageJson.optLong("total_tokens",
+                usageJson.optLong("prompt_tokens", 0) + usageJson.optLong("completion_tokens", 0));
+        final LocalDate today = LocalDate.now();
+        for (String counted : new String[]{model, ALL_MODELS}) {
+            usage.computeIfAbsent(dayKey(hostId, counted, today), k -> new AtomicLong()).addAndGet(tokens);
+            usage.computeIfAbsent(monthKey(hostId, counted, today), k -> new AtomicLong()).addAndGet(tokens);
+        }
+    }
+
+    long used(String key) {
+        final AtomicLong counter = usage.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    static String dayKey(String hostId, String model, LocalDate date) {
+        return hostId + "|" + model + "|D" + DAY.format(date);
+    }
+
+    static String monthKey(String hostId, String model, LocalDate date) {
+        return hostId + "|" + model + "|M" + MONTH.format(date);
+    }
+
+    void load() {
+        if (!storeFile.exists()) {
+            return;
+        }
+        Try.run(() -> {
+            final JSONObject stored = new JSONObject(Files.readString(storeFile.toPath(), StandardCharsets.UTF_8));
+            final Iterator<?> keys = stored.keys();
+            while (keys.hasNext()) {
+                final String key = (String) keys.next();
+                final String[] parts = key.split("\\|");
+                if (parts.length != 3 || ALL_MODELS.equals(parts[1])) {
+                    continue;
+                }
+                // the host totals are summed again from the models, so files written before they were kept work
+                usage.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(stored.getLong(key));
+                usage.computeIfAbsent(parts[0] + "|" + ALL_MODELS + "|" + parts[2], k -> new AtomicLong())
+                        .addAndGet(stored.getLong(key));
+            }
+        }).onFailure(e -> Logger.warn(this.getClass(), "Unable to read token budget: " + e.getMessage()));
+    }
+
+    synchronized void persist() {
+        final LocalDate today = LocalDate.now();
+        final String currentDay = "|D" + DAY.format(today);
+        final String currentMonth = "|M" + MONTH.format(today);
+        usage.keySet().removeIf(k -> !k.endsWith(currentDay) && !k.endsWith(currentMonth));
+
+        final JSONObject toStore = new JSONObject();
+        usage.forEach((k, v) -> toStore.put(k, v.get()));
+        Try.run(() -> {
+            storeFile.getParentFile().mkdirs();
+            final File tmp = new File(storeFile.getAbsolutePath() + ".tmp");
+            Files.writeString(tmp.toPath(), toStore.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }).onFailure(e -> Logger.warn(this.getClass(), "Unable to persist token budget: " + e.getMessage()));
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+        persist();
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.dotcms.ai.translation;
+
+import io.vavr.control.Try;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The resolved source term to target term pairs for one prefix and language pair.  The version is a fingerprint of
+ * the pairs, so it only changes when the glossary content does and is stable across restarts.
+ */
+public class Glossary {
+
+    public static final Glossary EMPTY = new Glossary(Map.of());
+
+    private final Map<String, String> terms;
+
+    private final long version;
+
+    Glossary(Map<String, String> terms) {
+        this.terms = Collections.unmodifiableMap(new LinkedHashMap<>(terms));
+        this.version = fingerprint(this.terms);
+    }
+
+    public Map<String, String> getTerms() {
+        return terms;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * A stable hash of the pairs, 0 for an empty glossary
+     * @param terms
+     * @return
+     */
+    public static long fingerprint(Map<String, String> terms) {
+        if (terms.isEmpty()) {
+            return 0;
+        }
+        final StringBuilder builder = new StringBuilder();
+        new TreeMap<>(terms).forEach((k, v) -> builder.append(k).append('\u0000').append(v).append('\u0001'));
+        final byte[] digest = Try.of(() -> MessageDigest.getInstance("SHA-256")
+                .digest(builder.toString().getBytes(StandardCharsets.UTF_8))).get();
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private volatile GlossaryMatcher caseSensitiveMatcher;
+
+    private volatile GlossaryMatcher caseInsensitiveMatcher;
+
+    GlossaryMatcher matcher(boolean caseSensitive) {
+        if (caseSensitive) {
+            if (caseSensitiveMatcher == null) {
+                caseSensitiveMatcher = new GlossaryMatcher(terms.keySet(), true);
+            }
+            return caseSensitiveMatcher;
+        }
+        if (caseInsensitiveMatcher == null) {
+            caseInsensitiveMatcher = new GlossaryMatcher(terms.keySet(), false);
+        }
+        return caseInsensitiveMatcher;
+    }
+
+    /**
+     * Returns only the entries whose source term occurs in the text.  The matcher is built once per glossary (and so
+     * once per version), the first time it is needed.
+     * @param text
+     * @param caseSensitive
+     * @param wholeWords
+     * @return
+     */
+    public Map<String, String> termsIn(String text, boolean caseSensitive, boolean wholeWords) {
+        if (terms.isEmpty()) {
+            return Map.of();
+        }
+        final Map<String, String> found = new LinkedHashMap<>();
+        for (String term : matcher(caseSensitive).find(text, wholeWords)) {
+            found.put(term, terms.get(term));
+        }
+        return found;
+    }
+
+}
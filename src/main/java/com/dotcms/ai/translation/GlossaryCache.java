@@ -0,0 +1,52 @@
+package com.dotcms.ai.translation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.vavr.Lazy;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caches the translation glossary per (prefix, source language, target language) so translating into many
+ * languages does not re-run the KEY_VALUE searches.  Entries are invalidated by the
+ * {@link com.dotcms.ai.translation.listener.GlossaryInvalidationListener} when a matching KEY_VALUE contentlet is
+ * published, archived or deleted, and expire after an hour as a safety net.
+ */
+public class GlossaryCache {
+
+    public static final Lazy<GlossaryCache> instance = Lazy.of(GlossaryCache::new);
+
+    private final Cache<String, Glossary> cache = Caffeine.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .maximumSize(1000)
+            .build();
+
+    public Glossary get(String prefix, long sourceLang, long targetLang, Supplier<Glossary> loader) {
+        return cache.get(key(prefix, sourceLang, targetLang), k -> loader.get());
+    }
+
+    /**
+     * Drops every glossary that could contain the given language variable
+     * @param variableKey the language variable key, or null if unknown
+     * @param languageId the language of the changed variable
+     */
+    public void invalidate(String variableKey, long languageId) {
+        cache.asMap().keySet().removeIf(k -> {
+            final String[] parts = k.split("\\|");
+            final String prefix = parts[0];
+            final boolean languageMatches = Long.parseLong(parts[1]) == languageId
+                    || Long.parseLong(parts[2]) == languageId;
+            final boolean prefixMatches = variableKey == null || "*".equals(prefix) || variableKey.startsWith(prefix);
+            return languageMatches && prefixMatches;
+        });
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    static String key(String prefix, long sourceLang, long targetLang) {
+        return prefix + "|" + sourceLang + "|" + targetLang;
+    }
+
+}
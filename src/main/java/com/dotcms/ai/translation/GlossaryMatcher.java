@@ -0,0 +1,130 @@
+package com.dotcms.ai.translation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * An Aho-Corasick automaton over the glossary terms, so we can find every term that occurs in a source text in a
+ * single pass no matter how many terms there are.
+ */
+public class GlossaryMatcher {
+
+    private static class Node {
+        final Map<Character, Integer> next = new HashMap<>();
+        int fail = 0;
+        /**
+         * indexes of the terms that end at this node, including those reached through fail links
+         */
+        final List<Integer> outputs = new ArrayList<>(1);
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final List<String> terms = new ArrayList<>();
+
+    private final boolean caseSensitive;
+
+    public GlossaryMatcher(Collection<String> terms, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        nodes.add(new Node());
+        for (String term : terms) {
+            if (term == null || term.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < term.length(); i++) {
+                final char c = fold(term.charAt(i));
+                Integer next = nodes.get(state).next.get(c);
+                if (next == null) {
+                    next = nodes.size();
+                    nodes.add(new Node());
+                    nodes.get(state).next.put(c, next);
+                }
+                state = next;
+            }
+            nodes.get(state).outputs.add(this.terms.size());
+            this.terms.add(term);
+        }
+        buildFailLinks();
+    }
+
+    private void buildFailLinks() {
+        final Queue<Integer> queue = new ArrayDeque<>(nodes.get(0).next.values());
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : nodes.get(state).next.entrySet()) {
+                final int child = edge.getValue();
+                int fail = nodes.get(state).fail;
+                while (fail != 0 && !nodes.get(fail).next.containsKey(edge.getKey())) {
+                    fail = nodes.get(fail).fail;
+                }
+                final Integer failTarget = nodes.get(fail).next.get(edge.getKey());
+                nodes.get(child).fail = failTarget != null && failTarget != child ? failTarget : 0;
+                nodes.get(child).outputs.addAll(nodes.get(nodes.get(child).fail).outputs);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Returns the terms that occur in the text, in the order they are first found
+     * @param text
+     * @param wholeWords only count matches that are not part of a longer word - scripts that do not separate words,
+     *                   e.g. Chinese, Japanese or Thai, have no word boundaries to check, so their terms always match
+     * @return
+     */
+    public Set<String> find(String text, boolean wholeWords) {
+        final Set<String> found = new LinkedHashSet<>();
+        if (text == null || terms.isEmpty()) {
+            return found;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = fold(text.charAt(i));
+            while (state != 0 && !nodes.get(state).next.containsKey(c)) {
+                state = nodes.get(state).fail;
+            }
+            state = nodes.get(state).next.getOrDefault(c, 0);
+            for (int termIndex : nodes.get(state).outputs) {
+                final String term = terms.get(termIndex);
+                final int start = i - term.length() + 1;
+                if (!wholeWords || isBoundary(text, start - 1, start) && isBoundary(text, i + 1, i)) {
+                    found.add(term);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * true if a word may end between the character at index and the term's own character at termIndex
+     */
+    private static boolean isBoundary(String text, int index, int termIndex) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index))
+                || isUnspaced(text.charAt(index)) || isUnspaced(text.charAt(termIndex));
+    }
+
+    private static boolean isUnspaced(char c) {
+        final Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.THAI
+                || script == Character.UnicodeScript.LAO
+                || script == Character.UnicodeScript.KHMER
+                || script == Character.UnicodeScript.MYANMAR
+                || script == Character.UnicodeScript.TIBETAN;
+    }
+
+    private char fold(char c) {
+        return caseSensitive ? c : Character.toLowerCase(c);
+    }
+
+}
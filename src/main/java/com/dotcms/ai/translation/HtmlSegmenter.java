@@ -0,0 +1,314 @@
+package com.dotcms.ai.translation;
+
+import com.dotmarketing.util.Logger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns html into the text runs between block level markup so only text is sent to the model.  Inline markup inside
+ * a run is replaced by compact placeholders - {@code <g1>..</g1>} for paired tags and {@code <x1/>} for standalone
+ * ones - which the model keeps around the translated words, and the original markup is restored locally afterwards.
+ * The html is read in a single pass and does not need to be well formed.
+ */
+class HtmlSegmenter {
+
+    /**
+     * segment keys for text runs are the field key plus this separator plus the run index
+     */
+    static final String RUN_SEPARATOR = "#html";
+
+    static final Pattern HTML_TAG = Pattern.compile("<[a-zA-Z][^>]*>");
+
+    /**
+     * matches placeholders, also when the model escaped the slash with a back slash
+     */
+    static final Pattern PLACEHOLDER = Pattern.compile("<(\\\\?/)?([gx])(\\d+)\\s*(\\\\?/)?>");
+
+    static final Set<String> INLINE_ELEMENTS = Set.of("a", "abbr", "b", "bdi", "bdo", "br", "cite", "code", "data",
+            "del", "dfn", "em", "font", "i", "img", "ins", "kbd", "mark", "q", "s", "samp", "small", "span", "strike",
+            "strong", "sub", "sup", "time", "u", "var", "wbr");
+
+    static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img", "input",
+            "link", "meta", "source", "track", "wbr");
+
+    /**
+     * elements whose content is never translated
+     */
+    static final Set<String> RAW_ELEMENTS = Set.of("script", "style", "template", "textarea", "svg", "math");
+
+    /**
+     * The text runs of a html value, the markup around them and what each placeholder stands for
+     */
+    static class Segments {
+
+        /**
+         * markup.get(i) goes before runs.get(i), the last entry goes after the last run
+         */
+        final List<String> markup;
+        final List<String> runs;
+        final List<Map<String, String>> placeholders;
+
+        Segments(List<String> markup, List<String> runs, List<Map<String, String>> placeholders) {
+            this.markup = markup;
+            this.runs = runs;
+            this.placeholders = placeholders;
+        }
+    }
+
+    static boolean isHtml(String value) {
+        return value != null && HTML_TAG.matcher(value).find();
+    }
+
+    static Segments segment(String html) {
+        return new Parser(html).parse();
+    }
+
+    /**
+     * Puts the translated runs back into the markup.  A run whose translation is missing or does not have exactly the
+     * placeholders of its source run keeps its source text, so one bad run does not cost the whole value its
+     * translation.  Returns empty if no run was translated.
+     */
+    static Optional<String> restore(Segments segments, List<String> translatedRuns) {
+        final StringBuilder html = new StringBuilder(segments.markup.get(0));
+        int kept = 0;
+        for (int i = 0; i < segments.runs.size(); i++) {
+            String translated = translatedRuns.get(i);
+            if (translated == null || !placeholdersMatch(segments.runs.get(i), translated)) {
+                translated = segments.runs.get(i);
+                kept++;
+            }
+            final Map<String, String> placeholders = segments.placeholders.get(i);
+            final Matcher matcher = PLACEHOLDER.matcher(translated);
+            final StringBuffer run = new StringBuffer();
+            while (matcher.find()) {
+                matcher.appendReplacement(run, Matcher.quoteReplacement(placeholders.get(normalize(matcher))));
+            }
+            matcher.appendTail(run);
+            html.append(run).append(segments.markup.get(i + 1));
+        }
+        if (kept == segments.runs.size()) {
+            return Optional.empty();
+        }
+        if (kept > 0) {
+            final int keptRuns = kept;
+            Logger.debug(HtmlSegmenter.class, () -> keptRuns + " of " + segments.runs.size()
+                    + " html runs were not translated and keep their source text");
+        }
+        return Optional.of(html.toString());
+    }
+
+    /**
+     * true if the translation has the same placeholders as the source, in any order
+     */
+    static boolean placeholdersMatch(String source, String translated) {
+        return placeholdersIn(source).equals(placeholdersIn(translated));
+    }
+
+    private static List<String> placeholdersIn(String value) {
+        final List<String> found = new ArrayList<>();
+        final Matcher matcher = PLACEHOLDER.matcher(value);
+        while (matcher.find()) {
+            found.add(normalize(matcher));
+        }
+        found.sort(null);
+        return found;
+    }
+
+    private static String normalize(Matcher matcher) {
+        if ("x".equals(matcher.group(2))) {
+            return "<x" + matcher.group(3) + "/>";
+        }
+        return (matcher.group(1) != null ? "</g" : "<g") + matcher.group(3) + ">";
+    }
+
+    private static class Parser {
+
+        private final String html;
+        private final List<String> markup = new ArrayList<>();
+        private final List<String> runs = new ArrayList<>();
+        private final List<Map<String, String>> placeholders = new ArrayList<>();
+
+        private final StringBuilder pendingMarkup = new StringBuilder();
+        private final StringBuilder run = new StringBuilder();
+        private final StringBuilder rawRun = new StringBuilder();
+        private Map<String, String> runPlaceholders = new HashMap<>();
+        private final Deque<String[]> openInline = new ArrayDeque<>();
+        private final Set<Integer> unclosed = new TreeSet<>();
+        private boolean runHasText = false;
+        private int nextId = 1;
+
+        Parser(String html) {
+            this.html = html;
+        }
+
+        Segments parse() {
+            int i = 0;
+            while (i < html.length()) {
+                final char c = html.charAt(i);
+                if (c != '<' || i + 1 >= html.length() || !isTagStart(html.charAt(i + 1))) {
+                    run.append(c);
+                    rawRun.append(c);
+                    runHasText |= !Character.isWhitespace(c);
+                    i++;
+                    continue;
+                }
+                if (html.startsWith("<!--", i)) {
+                    final int end = html.indexOf("-->", i + 4);
+                    i = blockMarkup(i, end < 0 ? html.length() : end + 3);
+                    continue;
+                }
+                final int end = tagEnd(i);
+                final String tag = html.substring(i, end);
+                final String name = tagName(tag);
+                final boolean closing = tag.startsWith("</");
+                if (!closing && RAW_ELEMENTS.contains(name)) {
+                    final int close = closingTag(name, end);
+                    i = blockMarkup(i, close < 0 ? html.length() : tagEnd(close));
+                    continue;
+                }
+                if (!INLINE_ELEMENTS.contains(name) || tag.startsWith("<!") || tag.startsWith("<?")) {
+                    i = blockMarkup(i, end);
+                    continue;
+                }
+                inlineMarkup(tag, name, closing);
+                i = end;
+            }
+            flushRun();
+            markup.add(pendingMarkup.toString());
+            return new Segments(markup, runs, placeholders);
+        }
+
+        private static boolean isTagStart(char c) {
+            return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+        }
+
+        /**
+         * index just after the closing > of the tag starting at start, skipping > inside quoted attribute values
+         */
+        private int tagEnd(int start) {
+            char quote = 0;
+            for (int i = start + 1; i < html.length(); i++) {
+                final char c = html.charAt(i);
+                if (quote != 0) {
+                    quote = c == quote ? 0 : quote;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return i + 1;
+                }
+            }
+            return html.length();
+        }
+
+        private int closingTag(String name, int from) {
+            for (int i = html.indexOf("</", from); i >= 0; i = html.indexOf("</", i + 2)) {
+                if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String tagName(String tag) {
+            int start = tag.startsWith("</") ? 2 : 1;
+            int end = start;
+            while (end < tag.length() && (Character.isLetterOrDigit(tag.charAt(end)) || tag.charAt(end) == '-')) {
+                end++;
+            }
+            return tag.substring(start, end).toLowerCase();
+        }
+
+        private int blockMarkup(int start, int end) {
+            flushRun();
+            pendingMarkup.append(html, start, end);
+            return end;
+        }
+
+        private void inlineMarkup(String tag, String name, boolean closing) {
+            if (closing) {
+                String[] open = null;
+                for (String[] candidate : openInline) {
+                    if (candidate[0].equals(name)) {
+                        open = candidate;
+                        break;
+                    }
+                }
+                if (open != null) {
+                    openInline.remove(open);
+                    unclosed.remove(Integer.valueOf(open[1]));
+                    addPlaceholder("</g" + open[1] + ">", tag);
+                } else {
+                    addPlaceholder("<x" + nextId++ + "/>", tag);
+                }
+                return;
+            }
+            if (VOID_ELEMENTS.contains(name) || tag.endsWith("/>")) {
+                addPlaceholder("<x" + nextId++ + "/>", tag);
+                return;
+            }
+            final int id = nextId++;
+            openInline.push(new String[]{name, String.valueOf(id)});
+            unclosed.add(id);
+            addPlaceholder("<g" + id + ">", tag);
+        }
+
+        private void addPlaceholder(String placeholder, String tag) {
+            runPlaceholders.put(placeholder, tag);
+            run.append(placeholder);
+            rawRun.append(tag);
+        }
+
+        /**
+         * Ends the current run at a block boundary.  Runs without text go straight into the markup, and the
+         * whitespace around a run stays in the markup so it is neither sent nor changed.
+         */
+        private void flushRun() {
+            if (run.length() == 0) {
+                return;
+            }
+            // inline tags left open at a block boundary cannot be paired, send them as standalone placeholders
+            for (Integer id : unclosed) {
+                final String tag = runPlaceholders.remove("<g" + id + ">");
+                final String standalone = "<x" + id + "/>";
+                runPlaceholders.put(standalone, tag);
+                final int at = run.indexOf("<g" + id + ">");
+                run.replace(at, at + ("<g" + id + ">").length(), standalone);
+            }
+            if (!runHasText) {
+                pendingMarkup.append(rawRun);
+            } else {
+                final String text = run.toString();
+                int start = 0;
+                int end = text.length();
+                while (start < end && Character.isWhitespace(text.charAt(start))) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                markup.add(pendingMarkup.append(text, 0, start).toString());
+                runs.add(text.substring(start, end));
+                placeholders.add(runPlaceholders);
+                pendingMarkup.setLength(0);
+                pendingMarkup.append(text, end, text.length());
+            }
+            runPlaceholders = new HashMap<>();
+            run.setLength(0);
+            rawRun.setLength(0);
+            openInline.clear();
+            unclosed.clear();
+            runHasText = false;
+            nextId = 1;
+        }
+    }
+
+}
@@ -1,15 +1,20 @@
 package com.dotcms.ai.translation;
 
+import com.dotcms.ai.client.AICompletionClient;
+import com.dotcms.ai.client.AIOperation;
+import com.dotcms.ai.client.AIPriority;
 import com.dotcms.ai.translation.workflow.OpenAITranslationActionlet;
 import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.util.HostConcurrencyLimiter;
 import com.dotcms.contenttype.model.field.Field;
 import com.dotcms.contenttype.model.type.BaseContentType;
 import com.dotcms.contenttype.transform.field.LegacyFieldTransformer;
 import com.dotcms.translate.AbstractTranslationService;
 import com.dotcms.translate.ServiceParameter;
 import com.dotcms.translate.TranslationException;
-import com.dotcms.translate.TranslationService;
+import com.dotmarketing.beans.Host;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.languagesmanager.model.Language;
@@ -20,13 +25,24 @@ import com.dotmarketing.util.VelocityUtil;
 import com.dotmarketing.util.json.JSONObject;
 import com.liferay.portal.model.User;
 import io.vavr.Lazy;
-import io.vavr.control.Option;
 import io.vavr.control.Try;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.velocity.context.Context;
 
@@ -39,33 +55,123 @@ public class OpenAITranslationService extends AbstractTranslationService {
     static final String AI_TRANSLATION_TEMPERATURE ="AI_TRANSLATION_TEMPERATURE";
     static final String AI_TRANSLATION_RESPONSE_FORMAT ="AI_TRANSLATION_RESPONSE_FORMAT";
 
+    static final String AI_TRANSLATION_GLOSSARY_CASE_SENSITIVE = "AI_TRANSLATION_GLOSSARY_CASE_SENSITIVE";
+    static final String AI_TRANSLATION_GLOSSARY_WHOLE_WORDS = "AI_TRANSLATION_GLOSSARY_WHOLE_WORDS";
+
     static int MAX_LANGUAGE_VARIABLE_CONTEXT = 1000;
 
 
-    public static final Lazy<TranslationService> INSTANCE = Lazy.of(()-> new OpenAITranslationService());
+    static final String AI_TRANSLATION_MAX_CONCURRENCY = "AI_TRANSLATION_MAX_CONCURRENCY";
+    static final String AI_TRANSLATION_THREADS = "AI_TRANSLATION_THREADS";
+
+    public static final Lazy<OpenAITranslationService> INSTANCE = Lazy.of(()-> new OpenAITranslationService());
+
+    static final Lazy<ExecutorService> translationExecutor = Lazy.of(() -> {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(AIUtil.getIntProperty(AI_TRANSLATION_THREADS, 8), r -> {
+            Thread thread = new Thread(r, "dotai-translation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    });
+
+    static final String AI_TRANSLATION_BATCH_TOKENS = "AI_TRANSLATION_BATCH_TOKENS";
+    static final String AI_TRANSLATION_CHUNK_TOKENS = "AI_TRANSLATION_CHUNK_TOKENS";
+
+    /**
+     * runs the individual requests of one translation, separate from the per language pool so a language task
+     * never waits on its own pool
+     */
+    static final Lazy<ExecutorService> requestExecutor = Lazy.of(() -> {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(AIUtil.getIntProperty(AI_TRANSLATION_THREADS, 8) * 2, r -> {
+            Thread thread = new Thread(r, "dotai-translation-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    });
+
+    final Map<String, Map<String, String>> serviceParameters = new ConcurrentHashMap<>();
+
+    /**
+     * caps the translation requests in flight per host, over all languages and contentlets
+     */
+    final HostConcurrencyLimiter hostLimiter = new HostConcurrencyLimiter(AI_TRANSLATION_MAX_CONCURRENCY, 4);
 
 
 
 
     @Override
     public String translateString(String toTranslate, Language from, Language to) throws TranslationException {
-        throw new DotRuntimeException("Not implemented");
+        return translateStrings(List.of(toTranslate), from, to).get(0);
     }
 
+    /**
+     * Keys each string by its position and translates them as segments, which are packed into requests of up to
+     * {@link #AI_TRANSLATION_BATCH_TOKENS} estimated tokens and sent concurrently.  The results are mapped back in
+     * order.  Identical strings are only translated once and a string the model does not return is left
+     * untranslated.
+     */
     @Override
     public List<String> translateStrings(List<String> toTranslate, Language from, Language to)
             throws TranslationException {
-        throw new DotRuntimeException("Not implemented");
+
+        final String hostId = Host.SYSTEM_HOST;
+
+        final Map<String, String> unique = new LinkedHashMap<>();
+        final Map<String, String> idsByString = new HashMap<>();
+        for (String string : toTranslate) {
+            if (UtilMethods.isSet(string) && !idsByString.containsKey(string)) {
+                final String id = "s" + unique.size();
+                idsByString.put(string, id);
+                unique.put(id, string);
+            }
+        }
+
+        final Map<String, String> translated = Try.of(
+                        () -> translateSegments(hostId, from, to, Optional.empty(), unique))
+                .getOrElseThrow(TranslationException::new);
+
+        final List<String> results = new ArrayList<>(toTranslate.size());
+        for (String string : toTranslate) {
+            final String id = idsByString.get(string);
+            results.add(id != null && translated.containsKey(id) ? translated.get(id) : string);
+        }
+        if (translated.size() < unique.size()) {
+            Logger.warn(this.getClass(), (unique.size() - translated.size()) + " of " + unique.size()
+                    + " strings were not translated from " + from.getLanguageCode() + " to " + to.getLanguageCode());
+        }
+        return results;
     }
 
     @Override
     public List<ServiceParameter> getServiceParameters() {
-        throw new DotRuntimeException("Not implemented");
+        return List.of(
+                new ServiceParameter(AI_TRANSLATION_MODEL_KEY, "Model", getTranslationModel(Host.SYSTEM_HOST)),
+                new ServiceParameter(AI_TRANSLATIONS_MAX_TOKENS, "Max Tokens",
+                        String.valueOf(getMaxTokens(Host.SYSTEM_HOST))),
+                new ServiceParameter(AI_TRANSLATION_TEMPERATURE, "Temperature",
+                        getTemperature(Host.SYSTEM_HOST).map(String::valueOf).orElse("")));
     }
 
+    /**
+     * Overrides the host's model, max tokens and temperature for this service until the plugin is reloaded
+     */
     @Override
     public void setServiceParameters(List<ServiceParameter> params, String hostId) {
-        throw new DotRuntimeException("Not implemented");
+        final Map<String, String> hostParameters = serviceParameters.computeIfAbsent(hostId,
+                k -> new ConcurrentHashMap<>());
+        for (ServiceParameter param : params) {
+            if (UtilMethods.isSet(param.getValue())) {
+                hostParameters.put(param.getKey(), param.getValue());
+            } else {
+                hostParameters.remove(param.getKey());
+            }
+        }
+    }
+
+    Optional<String> serviceParameter(String hostId, String key) {
+        return Optional.ofNullable(serviceParameters.getOrDefault(hostId, Map.of()).get(key));
     }
 
     @Override
@@ -73,46 +179,571 @@ public class OpenAITranslationService extends AbstractTranslationService {
             List<com.dotmarketing.portlets.structure.model.Field> oldFields,
             User user) throws TranslationException {
 
-        return langs.stream().map(lang -> {
-                    try {
-                        return translateContent(contentlet, lang, oldFields, user);
-                    } catch (TranslationException e) {
-                        Logger.warnAndDebug(OpenAITranslationService.class, e.getMessage(), e);
-                        return null;
-                    }
-                })
+        return translateContentByLanguage(contentlet, langs, oldFields, user).values().stream()
+                .filter(Try::isSuccess)
+                .map(Try::get)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
 
     }
 
+    /**
+     * Translates the contentlet into each language concurrently, the model requests limited per host by
+     * {@link #AI_TRANSLATION_MAX_CONCURRENCY}.  The results are keyed by language id in the same order as the
+     * languages passed in - a failed language has a failed Try, a language with nothing to translate has null.
+     * @param contentlet
+     * @param langs
+     * @param oldFields
+     * @param user
+     * @return
+     */
+    public Map<Long, Try<Contentlet>> translateContentByLanguage(Contentlet contentlet, List<Language> langs,
+            List<com.dotmarketing.portlets.structure.model.Field> oldFields, User user) {
+
+        final Map<Long, Try<Contentlet>> results = new LinkedHashMap<>();
+        translateContentAsync(contentlet, langs, oldFields, user)
+                .forEach((langId, future) -> results.put(langId, result(contentlet, langId, future)));
+        return results;
+    }
+
+    /**
+     * Starts translating the contentlet into each language concurrently and returns right away, so callers can act
+     * on each language as soon as its translation is done.  The futures are keyed by language id in the same order
+     * as the languages passed in and complete with null for a language with nothing to translate.
+     * @param contentlet
+     * @param langs
+     * @param oldFields
+     * @param user
+     * @return
+     */
+    public Map<Long, CompletableFuture<Contentlet>> translateContentAsync(Contentlet contentlet, List<Language> langs,
+            List<com.dotmarketing.portlets.structure.model.Field> oldFields, User user) {
+
+        // the db reads - source language, glossary and checkout - are done here, on the calling thread and inside
+        // its transaction, only the calls to the model are handed to the pool
+        final AIPriority priority = AIPriority.current();
+        final String hostId = contentlet.getHost();
+        final Language sourceLang = APILocator.getLanguageAPI().getLanguage(contentlet.getLanguageId());
+        final List<Field> fields = new LegacyFieldTransformer(oldFields).asList();
+        final Map<String, String> source = sourceValues(contentlet, fields);
+        final Map<Long, CompletableFuture<Contentlet>> futures = new LinkedHashMap<>();
+        for (Language lang : langs) {
+            if (source.isEmpty()) {
+                futures.put(lang.getId(), CompletableFuture.completedFuture(null));
+                continue;
+            }
+            final Glossary glossary;
+            final Contentlet translated;
+            try {
+                glossary = getGlossary(glossaryPrefix(contentlet), sourceLang.getId(), lang.getId());
+                translated = checkout(contentlet, user);
+            } catch (RuntimeException e) {
+                futures.put(lang.getId(), CompletableFuture.failedFuture(e));
+                continue;
+            }
+            futures.put(lang.getId(), CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Try.of(() -> AIPriority.withPriority(priority,
+                            () -> translateSegments(hostId, sourceLang, lang, glossary, source)))
+                            .getOrElseThrow(e -> e instanceof RuntimeException
+                                    ? (RuntimeException) e
+                                    : new DotRuntimeException(e));
+                } finally {
+                    DbConnectionFactory.closeSilently();
+                }
+            }, translationExecutor.get()).thenApply(translations -> applyTranslations(translated, lang, fields,
+                    translations)));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for a translation started by {@link #translateContentAsync}, logging it if it failed
+     */
+    public Try<Contentlet> result(Contentlet contentlet, long langId, Future<Contentlet> future) {
+        final Try<Contentlet> result = Try.of(future::get)
+                .recoverWith(ExecutionException.class, e -> Try.failure(e.getCause()));
+        result.onFailure(e -> Logger.warnAndDebug(OpenAITranslationService.class,
+                "Unable to translate " + contentlet.getIdentifier() + " to language " + langId + ": "
+                        + e.getMessage(), e));
+        return result;
+    }
+
+    /**
+     * Starts translating many contentlets into each language (other than their own) and returns right away.  Short
+     * contentlets - under {@link #AI_TRANSLATION_BATCH_TOKENS} - that share a host, source language and glossary
+     * prefix are translated together: their fields are packed into shared requests, so the prompt and glossary are
+     * sent once for many contentlets instead of once per contentlet.  Larger contentlets are translated on their
+     * own.  The futures are keyed by contentlet inode and then language id.
+     * @param contentlets
+     * @param langs
+     * @param fieldsOf the fields to translate for a contentlet
+     * @param user
+     * @return
+     */
+    public Map<String, Map<Long, CompletableFuture<Contentlet>>> translateContentBatchAsync(
+            List<Contentlet> contentlets, List<Language> langs,
+            Function<Contentlet, List<com.dotmarketing.portlets.structure.model.Field>> fieldsOf, User user) {
+
+        final Map<String, Map<Long, CompletableFuture<Contentlet>>> futures = new LinkedHashMap<>();
+        final Map<String, List<Contentlet>> groups = new LinkedHashMap<>();
+        final Map<String, Map<String, String>> sources = new HashMap<>();
+        for (Contentlet contentlet : contentlets) {
+            final List<Language> targets = langs.stream()
+                    .filter(lang -> lang.getId() != contentlet.getLanguageId())
+                    .collect(Collectors.toList());
+            final List<com.dotmarketing.portlets.structure.model.Field> oldFields = fieldsOf.apply(contentlet);
+            final Map<String, String> source = sourceValues(contentlet, new LegacyFieldTransformer(oldFields).asList());
+            final int tokens = source.values().stream().mapToInt(AIUtil::estimateTokens).sum();
+            if (tokens > AIUtil.getIntSecret(contentlet.getHost(), AI_TRANSLATION_BATCH_TOKENS, 2000)) {
+                futures.put(contentlet.getInode(), translateContentAsync(contentlet, targets, oldFields, user));
+                continue;
+            }
+            sources.put(contentlet.getInode(), source);
+            groups.computeIfAbsent(contentlet.getHost() + "|" + contentlet.getLanguageId() + "|"
+                    + glossaryPrefix(contentlet).orElse(""), k -> new ArrayList<>()).add(contentlet);
+            futures.put(contentlet.getInode(), new LinkedHashMap<>());
+        }
+
+        // as in translateContentAsync the db reads and checkouts happen on this thread, only the requests go to the
+        // pool
+        final AIPriority priority = AIPriority.current();
+        for (List<Contentlet> group : groups.values()) {
+            final Contentlet first = group.get(0);
+            final Language sourceLang = APILocator.getLanguageAPI().getLanguage(first.getLanguageId());
+            final Map<String, String> source = groupSource(group, sources);
+            for (Language lang : langs) {
+                if (lang.getId() == first.getLanguageId()) {
+                    continue;
+                }
+                final Glossary glossary;
+                final Map<String, Contentlet> checkedOut = new HashMap<>();
+                try {
+                    glossary = getGlossary(glossaryPrefix(first), sourceLang.getId(), lang.getId());
+                    for (Contentlet contentlet : group) {
+                        checkedOut.put(contentlet.getInode(), checkout(contentlet, user));
+                    }
+                } catch (RuntimeException e) {
+                    final CompletableFuture<Contentlet> failed = CompletableFuture.failedFuture(e);
+                    group.forEach(contentlet -> futures.get(contentlet.getInode()).put(lang.getId(), failed));
+                    continue;
+                }
+                final CompletableFuture<Map<String, String>> translated = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return Try.of(() -> AIPriority.withPriority(priority,
+                                        () -> translateSegments(first.getHost(), sourceLang, lang, glossary, source)))
+                                .getOrElseThrow(e -> e instanceof RuntimeException
+                                        ? (RuntimeException) e
+                                        : new DotRuntimeException(e));
+                    } finally {
+                        DbConnectionFactory.closeSilently();
+                    }
+                }, translationExecutor.get());
+                for (int i = 0; i < group.size(); i++) {
+                    final Contentlet contentlet = group.get(i);
+                    final String prefix = "c" + i + ".";
+                    final List<Field> fields = new LegacyFieldTransformer(fieldsOf.apply(contentlet)).asList();
+                    futures.get(contentlet.getInode()).put(lang.getId(), translated.thenApply(translations ->
+                            applyTranslations(checkedOut.get(contentlet.getInode()), lang, fields,
+                                    contentletTranslations(translations, prefix))));
+                }
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * The fields of a group of contentlets keyed by the contentlet's position in the group and the field var, e.g.
+     * {@code c3.title}, so they can be translated with shared requests
+     */
+    static Map<String, String> groupSource(List<Contentlet> group, Map<String, Map<String, String>> sources) {
+        final Map<String, String> source = new LinkedHashMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            final String prefix = "c" + i + ".";
+            sources.get(group.get(i).getInode()).forEach((key, value) -> source.put(prefix + key, value));
+        }
+        return source;
+    }
+
+    /**
+     * The translations of the group member with the given prefix, keyed by field var
+     */
+    static Map<String, String> contentletTranslations(Map<String, String> translations, String prefix) {
+        final Map<String, String> contentletTranslations = new HashMap<>();
+        translations.forEach((key, value) -> {
+            if (key.startsWith(prefix)) {
+                contentletTranslations.put(key.substring(prefix.length()), value);
+            }
+        });
+        return contentletTranslations;
+    }
+
     @Override
     public Contentlet translateContent(Contentlet contentlet, Language targetLanguage, List<com.dotmarketing.portlets.structure.model.Field> oldFields, User user)
             throws TranslationException {
         Language sourceLang = APILocator.getLanguageAPI().getLanguage(contentlet.getLanguageId());
         List<Field> fields = new LegacyFieldTransformer(oldFields).asList();
-        JSONObject sourceJson = new JSONObject();
-        fields.forEach(f -> {
+        Map<String, String> source = sourceValues(contentlet, fields);
 
+        Map<String, String> translations = translateSegments(contentlet.getHost(), sourceLang, targetLanguage,
+                glossaryPrefix(contentlet), source);
 
+        return translatedVersion(contentlet, targetLanguage, fields, translations, user);
+    }
+
+    /**
+     * Translates the contentlet's fields into each language only to fill the {@link TranslationMemory}, so a later
+     * translation of the same values is put together from memory instead of waiting on the model.  Nothing is checked
+     * out or saved.  Does nothing if translation memory is turned off for the host.
+     */
+    public void pretranslate(Contentlet contentlet, List<Language> langs,
+            List<com.dotmarketing.portlets.structure.model.Field> oldFields) {
+
+        final String hostId = contentlet.getHost();
+        if (!AIUtil.getBooleanSecret(hostId, TranslationMemory.AI_TRANSLATION_MEMORY_ENABLED, true)) {
+            return;
+        }
+        final Map<String, String> source = sourceValues(contentlet, new LegacyFieldTransformer(oldFields).asList());
+        if (source.isEmpty()) {
+            return;
+        }
+        final Language sourceLang = APILocator.getLanguageAPI().getLanguage(contentlet.getLanguageId());
+        for (Language lang : langs) {
+            if (lang.getId() == sourceLang.getId()) {
+                continue;
+            }
+            Try.run(() -> translateSegments(hostId, sourceLang, lang, glossaryPrefix(contentlet), source))
+                    .onFailure(e -> Logger.warnAndDebug(this.getClass(), "Unable to pre-translate "
+                            + contentlet.getIdentifier() + " to language " + lang.getId() + ": " + e.getMessage(), e));
+        }
+    }
+
+    Map<String, String> sourceValues(Contentlet contentlet, List<Field> fields) {
+        Map<String, String> source = new LinkedHashMap<>();
+        fields.forEach(f -> {
             String value = contentlet.getStringProperty(f.variable());
             if (UtilMethods.isSet(value)) {
-                if(StringUtils.isJson(value)){
-                    sourceJson.put(f.variable(), new JSONObject(value));
-                }else{
-                    sourceJson.put(f.variable(), value);
+                source.put(f.variable(), value);
+            }
+        });
+        return source;
+    }
+
+    Optional<String> glossaryPrefix(Contentlet contentlet) {
+        return Optional.ofNullable((String) contentlet.getMap().get(OpenAITranslationActionlet.TRANSLATION_KEY_PREFIX));
+    }
+
+    /**
+     * Checks out a new version of the contentlet in the target language with the translated field values, null if
+     * nothing was translated
+     */
+    Contentlet translatedVersion(Contentlet contentlet, Language targetLanguage, List<Field> fields,
+            Map<String, String> translations, User user) {
+
+        if(translations.isEmpty()){
+            return null;
+        }
+
+        return applyTranslations(checkout(contentlet, user), targetLanguage, fields, translations);
+    }
+
+    Contentlet checkout(Contentlet contentlet, User user) {
+        return Try.of(()->APILocator.getContentletAPI()
+                .checkout(contentlet.getInode(), user, false)).getOrElseThrow(DotRuntimeException::new);
+    }
+
+    /**
+     * Moves a checked out version to the target language and sets the translated field values on it, null if there
+     * were none.  Does not touch the db, so it can run on any thread.
+     */
+    Contentlet applyTranslations(Contentlet translated, Language targetLanguage, List<Field> fields,
+            Map<String, String> translations) {
+
+        translated.setLanguageId(targetLanguage.getId());
+
+        boolean hasChanges = false;
+
+        for (Field field : fields) {
+            String value = translations.get(field.variable());
+            if(UtilMethods.isSet(value)){
+                translated.setStringProperty(field.variable(), value);
+                hasChanges = true;
+            }
+        }
+
+        return hasChanges ? translated : null;
+    }
+
+    /**
+     * Translates a map of segments (e.g. field var to field value), returning the translations under the same keys.
+     * Only the text nodes of storyblocks and the text runs of html are sent, text values and html runs over
+     * {@link #AI_TRANSLATION_CHUNK_TOKENS} are split into chunks, segments found in the
+     * {@link TranslationMemory} are not sent to the model, and the rest are packed into requests of up to
+     * {@link #AI_TRANSLATION_BATCH_TOKENS} which are sent concurrently.
+     * @param hostId
+     * @param sourceLang
+     * @param targetLanguage
+     * @param translationKeyPrefix glossary prefix
+     * @param source
+     * @return
+     */
+    Map<String, String> translateSegments(String hostId, Language sourceLang, Language targetLanguage,
+            Optional<String> translationKeyPrefix, Map<String, String> source) {
+
+        return translateSegments(hostId, sourceLang, targetLanguage,
+                getGlossary(translationKeyPrefix, sourceLang.getId(), targetLanguage.getId()), source);
+    }
+
+    /**
+     * Like {@link #translateSegments(String, Language, Language, Optional, Map)} with the glossary already loaded,
+     * for callers that look it up on their own thread
+     */
+    Map<String, String> translateSegments(String hostId, Language sourceLang, Language targetLanguage,
+            Glossary glossary, Map<String, String> source) {
+
+        final boolean caseSensitive = AIUtil.getBooleanSecret(hostId, AI_TRANSLATION_GLOSSARY_CASE_SENSITIVE, false);
+        final boolean wholeWords = AIUtil.getBooleanSecret(hostId, AI_TRANSLATION_GLOSSARY_WHOLE_WORDS, true);
+        final TranslationRouter.Route defaultRoute = new TranslationRouter.Route("default",
+                getTranslationModel(hostId), getTemperature(hostId));
+        final boolean useMemory = AIUtil.getBooleanSecret(hostId, TranslationMemory.AI_TRANSLATION_MEMORY_ENABLED, true);
+        final int chunkTokens = AIUtil.getIntSecret(hostId, AI_TRANSLATION_CHUNK_TOKENS, 1500);
+        final int batchTokens = AIUtil.getIntSecret(hostId, AI_TRANSLATION_BATCH_TOKENS, 2000);
+
+        // storyblocks only send their text nodes, html only its text runs, oversized text and runs are split, and
+        // each text node, run or chunk becomes its own segment
+        final Map<String, Integer> storyblocks = new HashMap<>();
+        final Map<String, HtmlSegmenter.Segments> htmlValues = new HashMap<>();
+        final Map<String, TranslationChunker.Chunks> chunked = new HashMap<>();
+        final Map<String, String> segments = new LinkedHashMap<>();
+        final Map<String, TranslationRouter.SegmentType> segmentTypes = new HashMap<>();
+        source.forEach((key, value) -> {
+            if (StoryblockText.isStoryblock(value)) {
+                final List<String> texts = StoryblockText.extract(value);
+                storyblocks.put(key, texts.size());
+                for (int i = 0; i < texts.size(); i++) {
+                    if (UtilMethods.isSet(texts.get(i).trim())) {
+                        segments.put(key + StoryblockText.TEXT_SEPARATOR + i, texts.get(i));
+                        segmentTypes.put(key + StoryblockText.TEXT_SEPARATOR + i,
+                                TranslationRouter.SegmentType.STORYBLOCK);
+                    }
+                }
+                return;
+            }
+            if (HtmlSegmenter.isHtml(value)) {
+                final HtmlSegmenter.Segments html = HtmlSegmenter.segment(value);
+                htmlValues.put(key, html);
+                for (int i = 0; i < html.runs.size(); i++) {
+                    addText(key + HtmlSegmenter.RUN_SEPARATOR + i, html.runs.get(i),
+                            TranslationRouter.SegmentType.HTML, chunkTokens, segments, segmentTypes, chunked);
                 }
+                return;
+            }
+            addText(key, value, TranslationRouter.SegmentType.TEXT, chunkTokens, segments, segmentTypes, chunked);
+        });
 
+        final Map<String, String> translations = new HashMap<>();
+        final Map<String, String> memoryKeys = new LinkedHashMap<>();
+        final Map<String, String> toSend = new LinkedHashMap<>();
+        final Map<String, Map<String, String>> toSendTerms = new HashMap<>();
+        final Map<TranslationRouter.Route, Map<String, String>> toSendByRoute = new LinkedHashMap<>();
+        segments.forEach((key, value) -> {
+            final TranslationRouter.Route route = TranslationRouter.instance.get().route(hostId,
+                    segmentTypes.getOrDefault(key, TranslationRouter.SegmentType.TEXT), value, defaultRoute);
+            final Map<String, String> terms = glossary.termsIn(value, caseSensitive, wholeWords);
+            final String memoryKey = TranslationMemory.key(value, sourceLang.getId(), targetLanguage.getId(),
+                    route.model, Glossary.fingerprint(terms));
+            final Optional<String> remembered = useMemory
+                    ? TranslationMemory.instance.get().get(memoryKey)
+                    : Optional.empty();
+            if (remembered.isPresent()) {
+                // segments remembered before closing tags were unescaped may still have them escaped
+                translations.put(key, unescapeClosingTags(value, remembered.get()));
+                return;
             }
+            memoryKeys.put(key, memoryKey);
+            toSend.put(key, value);
+            toSendTerms.put(key, terms);
+            toSendByRoute.computeIfAbsent(route, k -> new LinkedHashMap<>()).put(key, value);
         });
 
-        Optional<String> translationKeyPrefix = Optional.ofNullable((String) contentlet.getMap().get(OpenAITranslationActionlet.TRANSLATION_KEY_PREFIX));
+        // segments are packed per route so every request goes to a single model
+        final List<Map.Entry<TranslationRouter.Route, JSONObject>> requests = new ArrayList<>();
+        toSendByRoute.forEach((route, routeSegments) -> packRequests(routeSegments, batchTokens)
+                .forEach(sourceJson -> requests.add(Map.entry(route, sourceJson))));
+        final List<Future<JSONObject>> responses = new ArrayList<>();
+        for (Map.Entry<TranslationRouter.Route, JSONObject> entry : requests) {
+            final TranslationRouter.Route route = entry.getKey();
+            final JSONObject sourceJson = entry.getValue();
+            // only send the glossary entries that actually occur in this request - matched against the segments
+            // themselves, in the json quotes, slashes and line breaks are escaped
+            final Map<String, String> glossaryTerms = new LinkedHashMap<>();
+            final Iterator<?> keys = sourceJson.keys();
+            while (keys.hasNext()) {
+                glossaryTerms.putAll(toSendTerms.get(String.valueOf(keys.next())));
+            }
+            // the host's limit counts the model requests, not the languages - one language can fan out to many
+            final Callable<JSONObject> request = () -> hostLimiter.call(hostId, () -> requestTranslation(hostId,
+                    sourceLang, targetLanguage, route, glossaryTerms, sourceJson));
+            responses.add(requests.size() == 1
+                    ? CompletableFuture.completedFuture(Try.of(request::call).getOrElseThrow(DotRuntimeException::new))
+                    : requestExecutor.get().submit(withPriority(request)));
+        }
+
+        for (Future<JSONObject> response : responses) {
+            final JSONObject aiResponse = Try.of(response::get)
+                    .recoverWith(ExecutionException.class, e -> Try.failure(e.getCause()))
+                    .getOrElseThrow(DotRuntimeException::new);
+            for (String key : memoryKeys.keySet()) {
+                final String value = responseValue(aiResponse, key, toSend.get(key));
+                // a translation that lost or invented html placeholders cannot be put back together
+                if (UtilMethods.isSet(value) && HtmlSegmenter.placeholdersMatch(toSend.get(key), value)) {
+                    translations.put(key, value);
+                    if (useMemory) {
+                        TranslationMemory.instance.get().put(memoryKeys.get(key), value);
+                    }
+                }
+            }
+        }
+
+        // put storyblocks, html and chunked values back together - a storyblock or text value is only translated if
+        // all of its parts are, an html run that was not translated keeps its source text
+        final Map<String, String> results = new LinkedHashMap<>();
+        for (String key : source.keySet()) {
+            if (storyblocks.containsKey(key)) {
+                final Map<Integer, String> translatedTexts = new HashMap<>();
+                boolean complete = true;
+                for (int i = 0; i < storyblocks.get(key); i++) {
+                    final String segmentKey = key + StoryblockText.TEXT_SEPARATOR + i;
+                    if (segments.containsKey(segmentKey)) {
+                        complete &= translations.containsKey(segmentKey);
+                        translatedTexts.put(i, translations.get(segmentKey));
+                    }
+                }
+                if (complete && !translatedTexts.isEmpty()) {
+                    results.put(key, StoryblockText.apply(source.get(key), translatedTexts));
+                }
+                continue;
+            }
+            final HtmlSegmenter.Segments html = htmlValues.get(key);
+            if (html != null) {
+                final List<String> translatedRuns = new ArrayList<>();
+                for (int i = 0; i < html.runs.size(); i++) {
+                    translatedRuns.add(translatedText(key + HtmlSegmenter.RUN_SEPARATOR + i, translations, chunked));
+                }
+                if (!html.runs.isEmpty()) {
+                    HtmlSegmenter.restore(html, translatedRuns).ifPresent(value -> results.put(key, value));
+                }
+                continue;
+            }
+            final String translated = translatedText(key, translations, chunked);
+            if (translated != null) {
+                results.put(key, translated);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds a text value or html run as a single segment, or as one segment per chunk if it is over chunkTokens
+     */
+    static void addText(String segmentKey, String text, TranslationRouter.SegmentType type, int chunkTokens,
+            Map<String, String> segments, Map<String, TranslationRouter.SegmentType> segmentTypes,
+            Map<String, TranslationChunker.Chunks> chunked) {
+        final TranslationChunker.Chunks chunks = TranslationChunker.split(text, chunkTokens);
+        if (!chunks.isSplit()) {
+            segments.put(segmentKey, text);
+            segmentTypes.put(segmentKey, type);
+            return;
+        }
+        chunked.put(segmentKey, chunks);
+        for (int i = 0; i < chunks.chunks.size(); i++) {
+            segments.put(segmentKey + TranslationChunker.CHUNK_SEPARATOR + i, chunks.chunks.get(i));
+            segmentTypes.put(segmentKey + TranslationChunker.CHUNK_SEPARATOR + i, type);
+        }
+    }
 
-        JSONObject translationKeysJSON = new JSONObject(getTranslationKeys(translationKeyPrefix, contentlet.getLanguageId(), targetLanguage.getId()));
+    /**
+     * The translation of a text added with {@link #addText}, null if it or any of its chunks was not translated
+     */
+    static String translatedText(String segmentKey, Map<String, String> translations,
+            Map<String, TranslationChunker.Chunks> chunked) {
+        final TranslationChunker.Chunks chunks = chunked.get(segmentKey);
+        if (chunks == null) {
+            return translations.get(segmentKey);
+        }
+        final List<String> translatedChunks = new ArrayList<>();
+        for (int i = 0; i < chunks.chunks.size(); i++) {
+            translatedChunks.add(translations.get(segmentKey + TranslationChunker.CHUNK_SEPARATOR + i));
+        }
+        return translatedChunks.contains(null) ? null : TranslationChunker.join(chunks, translatedChunks);
+    }
 
-        String systemPromptTemplate = getAISystemTranslationPrompt(contentlet.getHost());
-        String userPromptTemplate = getAIUserTranslationPrompt(contentlet.getHost());
+    /**
+     * Packs the segments into source json objects of up to maxTokens estimated tokens each
+     */
+    static List<JSONObject> packRequests(Map<String, String> segments, int maxTokens) {
+        final List<JSONObject> requests = new ArrayList<>();
+        JSONObject sourceJson = new JSONObject();
+        int tokens = 0;
+        for (Map.Entry<String, String> segment : segments.entrySet()) {
+            final int segmentTokens = AIUtil.estimateTokens(segment.getValue());
+            if (!sourceJson.isEmpty() && tokens + segmentTokens > maxTokens) {
+                requests.add(sourceJson);
+                sourceJson = new JSONObject();
+                tokens = 0;
+            }
+            if (StringUtils.isJson(segment.getValue())) {
+                sourceJson.put(segment.getKey(), new JSONObject(segment.getValue()));
+            } else {
+                sourceJson.put(segment.getKey(), segment.getValue());
+            }
+            tokens += segmentTokens;
+        }
+        if (!sourceJson.isEmpty()) {
+            requests.add(sourceJson);
+        }
+        return requests;
+    }
+
+    /**
+     * The translation of a segment from the model's answer.  Json segments are sent as nested objects and come back
+     * as objects, which escape closing tags as {@code <\/} when they are written back to a string - those are put
+     * back to {@code </} as the json fields are saved as they are.
+     */
+    static String responseValue(JSONObject aiResponse, String key, String sourceValue) {
+        return unescapeClosingTags(sourceValue, aiResponse.optString(key));
+    }
+
+    static String unescapeClosingTags(String sourceValue, String translated) {
+        return translated != null && StringUtils.isJson(sourceValue) ? translated.replace("<\\/", "</") : translated;
+    }
+
+    /**
+     * Carries the caller's AI priority over to the pooled thread that runs the callable and closes the db connection
+     * the callable may have opened there (secrets, prompts, model lookup) when it is done
+     */
+    static <T> Callable<T> withPriority(Callable<T> callable) {
+        final AIPriority priority = AIPriority.current();
+        return () -> {
+            try {
+                return AIPriority.withPriority(priority, callable);
+            } finally {
+                DbConnectionFactory.closeSilently();
+            }
+        };
+    }
+
+    /**
+     * Builds the prompt for the source json, sends it and returns the parsed json object the model answered with
+     */
+    JSONObject requestTranslation(String hostId, Language sourceLang, Language targetLanguage,
+            TranslationRouter.Route route, Map<String, String> glossaryTerms, JSONObject sourceJson) {
+
+        JSONObject translationKeysJSON = new JSONObject(glossaryTerms);
+
+        String systemPromptTemplate = getAISystemTranslationPrompt(hostId);
+        String userPromptTemplate = getAIUserTranslationPrompt(hostId);
 
         Context systemContext = VelocityUtil.getBasicContext();
         systemContext.put("sourceLanguage", sourceLang.getLanguage() + "(" + sourceLang.getCountry() + ")");
@@ -132,13 +763,16 @@ public class OpenAITranslationService extends AbstractTranslationService {
         String userPrompt = Try.of(() -> VelocityUtil.eval(userPromptTemplate, userContext))
                 .getOrElseThrow(DotRuntimeException::new);
 
-        int maxTokens = getMaxTokens(contentlet.getHost());
-        String model = getTranslationModel(contentlet.getHost());
+        // temperature and max_tokens are only sent when configured, reasoning models reject both.  max_tokens can
+        // follow the size of the request so a short request cannot run on to the configured maximum
+        final String source = sourceJson.toString();
+        final int maxTokens = TranslationRouter.instance.get().maxTokens(hostId, source, getMaxTokens(hostId));
 
         JSONObject promptJson = new JSONObject();
-        promptJson.put("model", model);
+        promptJson.put("model", route.model);
+        route.temperature.ifPresent(temperature -> promptJson.put("temperature", temperature));
 
-        Optional<String> responseFormat = getResponseFormat(contentlet.getHost());
+        Optional<String> responseFormat = getResponseFormat(hostId, route.model);
         if (responseFormat.isPresent()) {
             promptJson.putAll(Map.of("response_format", Map.of("type", responseFormat.get())));
         }
@@ -149,43 +783,53 @@ public class OpenAITranslationService extends AbstractTranslationService {
         promptJson.put("messages", List.of(Map.of("role", "system", "content", systemPrompt),
                 Map.of("role", "user", "content", userPrompt)));
 
-        Logger.info(this.getClass(),"promptJson: " + promptJson.toString(2) + "\n\n");
-
-        final JSONObject openAIResponse = APILocator.getDotAIAPI()
-                .getCompletionsAPI()
-                .raw(promptJson, APILocator.systemUser().getUserId());
-
-        Logger.info(this.getClass(),"openAIResponse: " + openAIResponse.toString(2) + "\n\n");
-
-        JSONObject aiResponse = parseAIResponse(openAIResponse);
-
-        if(aiResponse.isEmpty()){
-            return null;
-        }
-
-        Contentlet translated = Try.of(()->APILocator.getContentletAPI()
-                .checkout(contentlet.getInode(), user, false)).getOrElseThrow(DotRuntimeException::new);
-
-        translated.setLanguageId(targetLanguage.getId());
-
-        boolean hasChanges = false;
-
-        for (Field field : fields) {
-            String value = aiResponse.optString(field.variable());
-            if(UtilMethods.isSet(value)){
-                translated.setStringProperty(field.variable(),value.replaceAll("<\\\\/", "</"));
-                hasChanges = true;
-            }
+        final long start = System.currentTimeMillis();
+        final JSONObject openAIResponse;
+        try {
+            openAIResponse = AICompletionClient.instance.get().raw(promptJson, hostId, AIOperation.TRANSLATION);
+        } catch (RuntimeException e) {
+            TranslationRouter.instance.get().record(route, sourceJson.length(), AIUtil.estimateTokens(source),
+                    System.currentTimeMillis() - start, true);
+            throw e;
         }
+        TranslationRouter.instance.get().record(route, sourceJson.length(), AIUtil.estimateTokens(source),
+                System.currentTimeMillis() - start, false);
 
+        return parseAIResponse(openAIResponse);
+    }
 
-        return hasChanges ? translated : null;
 
 
 
+    /**
+     * Resolves the host's translation config, renders its system prompt once to load velocity and opens the
+     * translation memory, so the host's first translation does not pay for it
+     */
+    public void warmUp(String hostId) {
+        getTranslationModel(hostId);
+        getTemperature(hostId);
+        getMaxTokens(hostId);
+        getAIUserTranslationPrompt(hostId);
+        final String systemPrompt = getAISystemTranslationPrompt(hostId);
+        if (UtilMethods.isSet(systemPrompt)) {
+            final Context context = VelocityUtil.getBasicContext();
+            context.put("sourceLanguage", "en");
+            context.put("targetLanguage", "es");
+            Try.of(() -> VelocityUtil.eval(systemPrompt, context));
+        }
+        if (AIUtil.getBooleanSecret(hostId, TranslationMemory.AI_TRANSLATION_MEMORY_ENABLED, true)) {
+            TranslationMemory.instance.get().get(TranslationMemory.key("", 0, 0, "", 0));
+        }
     }
 
-
+    public static void shutdown() {
+        if (translationExecutor.isEvaluated()) {
+            translationExecutor.get().shutdownNow();
+        }
+        if (requestExecutor.isEvaluated()) {
+            requestExecutor.get().shutdownNow();
+        }
+    }
 
 
     JSONObject parseAIResponse(JSONObject response) {
@@ -217,6 +861,24 @@ public class OpenAITranslationService extends AbstractTranslationService {
 
 
 
+    /**
+     * Returns the glossary for the prefix and language pair from the {@link GlossaryCache}, loading it with
+     * {@link #getTranslationKeys} on a miss
+     */
+    Glossary getGlossary(Optional<String> prefixIn, long originalLang, long langToTranslate) {
+
+        if(prefixIn.isEmpty() || UtilMethods.isEmpty(prefixIn.get())){
+            return Glossary.EMPTY;
+        }
+
+        if (originalLang == langToTranslate) {
+            throw new DotRuntimeException("Cannot translate contentlet to the same language: " + langToTranslate);
+        }
+
+        return GlossaryCache.instance.get().get(prefixIn.get(), originalLang, langToTranslate,
+                () -> new Glossary(getTranslationKeys(prefixIn, originalLang, langToTranslate)));
+    }
+
     Map<String, String> getTranslationKeys(Optional<String> prefixIn, long originalLang, long langToTranslate) {
 
         if(prefixIn.isEmpty() || UtilMethods.isEmpty(prefixIn.get())){
@@ -265,6 +927,11 @@ public class OpenAITranslationService extends AbstractTranslationService {
                     continue;
                 }
                 if (workingCon.getIdentifier().equals(nextCon.getIdentifier())) {
+                    if (UtilMethods.isEmpty(workingCon.getStringProperty("value")) || UtilMethods.isEmpty(
+                            nextCon.getStringProperty("value"))) {
+                        i++;
+                        continue;
+                    }
                     if (workingCon.getLanguageId() == originalLang) {
                         context.put(workingCon.getStringProperty("value"), nextCon.getStringProperty("value"));
                     } else {
@@ -296,6 +963,11 @@ public class OpenAITranslationService extends AbstractTranslationService {
 
     int getMaxTokens(String hostId) {
 
+        if (serviceParameter(hostId, AI_TRANSLATIONS_MAX_TOKENS).isPresent()) {
+            return Try.of(() -> Integer.parseInt(serviceParameter(hostId, AI_TRANSLATIONS_MAX_TOKENS).get()))
+                    .getOrElse(0);
+        }
+
         return Try.of(() -> Integer.parseInt(AIUtil.getSecrets(hostId).get(AI_TRANSLATIONS_MAX_TOKENS).getString()))
                 .getOrElse(0);
 
@@ -304,24 +976,34 @@ public class OpenAITranslationService extends AbstractTranslationService {
 
     String getTranslationModel(String hostId) {
 
+        if (serviceParameter(hostId, AI_TRANSLATION_MODEL_KEY).isPresent()) {
+            return serviceParameter(hostId, AI_TRANSLATION_MODEL_KEY).get();
+        }
+
         if (UtilMethods.isSet(() -> AIUtil.getSecrets(hostId).get(AI_TRANSLATION_MODEL_KEY).getString())) {
             return AIUtil.getSecrets(hostId).get(AI_TRANSLATION_MODEL_KEY).getString();
         }
         return "gpt-4o";
     }
 
-    Optional<String> getResponseFormat(String hostId) {
+    Optional<String> getResponseFormat(String hostId, String model) {
 
         if (UtilMethods.isSet(() -> AIUtil.getSecrets(hostId).get(AI_TRANSLATION_RESPONSE_FORMAT).getString())) {
             return Optional.ofNullable(AIUtil.getSecrets(hostId).get(AI_TRANSLATION_RESPONSE_FORMAT).getString());
         }
-        return "gpt-4o".equals(getTranslationModel(hostId)) ? Optional.of("json_object") : Optional.empty();
+        return "gpt-4o".equals(model) ? Optional.of("json_object") : Optional.empty();
     }
 
-    float getTemperature(String hostId) {
+    /**
+     * The configured temperature, empty if none is set so the model's own default is used
+     */
+    Optional<Float> getTemperature(String hostId) {
+        if (serviceParameter(hostId, AI_TRANSLATION_TEMPERATURE).isPresent()) {
+            return Optional.of(Float.parseFloat(serviceParameter(hostId, AI_TRANSLATION_TEMPERATURE).get()));
+        }
         if (UtilMethods.isSet(() -> AIUtil.getSecrets(hostId).get(AI_TRANSLATION_TEMPERATURE).getString())) {
-            return Float.parseFloat(AIUtil.getSecrets(hostId).get(AI_TRANSLATION_TEMPERATURE).getString());
+            return Optional.of(Float.parseFloat(AIUtil.getSecrets(hostId).get(AI_TRANSLATION_TEMPERATURE).getString()));
         }
-        return 0.1f;
+        return Optional.empty();
     }
 }
@@ -0,0 +1,70 @@
+package com.dotcms.ai.translation;
+
+import com.dotmarketing.util.StringUtils;
+import com.dotmarketing.util.json.JSONArray;
+import com.dotmarketing.util.json.JSONObject;
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Pulls the {@code text} node values out of a storyblock (block editor) document so only the text is sent to the
+ * model, and writes the translations back into a copy of the document.  Marks, attrs and node types never leave
+ * dotCMS, so they cannot be corrupted.
+ */
+class StoryblockText {
+
+    /**
+     * segment keys for text nodes are the field key plus this separator plus the node index
+     */
+    static final String TEXT_SEPARATOR = "#text";
+
+    static boolean isStoryblock(String value) {
+        return StringUtils.isJson(value)
+                && Try.of(() -> new JSONObject(value).optJSONArray("content") != null).getOrElse(false);
+    }
+
+    /**
+     * Returns the value of every text node, in document order
+     */
+    static List<String> extract(String storyblock) {
+        final List<String> texts = new ArrayList<>();
+        walk(new JSONObject(storyblock), node -> texts.add(node.getString("text")));
+        return texts;
+    }
+
+    /**
+     * Returns a copy of the document with the text nodes replaced by their translations, keyed by the node index
+     * from {@link #extract}.  Nodes without a translation keep their original text.
+     */
+    static String apply(String storyblock, Map<Integer, String> translations) {
+        final JSONObject doc = new JSONObject(storyblock);
+        final int[] index = {0};
+        walk(doc, node -> {
+            final String translated = translations.get(index[0]++);
+            if (translated != null) {
+                node.put("text", translated);
+            }
+        });
+        return doc.toString();
+    }
+
+    private static void walk(JSONObject node, Consumer<JSONObject> visitor) {
+        if ("text".equals(node.optString("type")) && node.opt("text") instanceof String) {
+            visitor.accept(node);
+        }
+        final JSONArray content = node.optJSONArray("content");
+        if (content == null) {
+            return;
+        }
+        for (int i = 0; i < content.length(); i++) {
+            final JSONObject child = content.optJSONObject(i);
+            if (child != null) {
+                walk(child, visitor);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.dotcms.ai.translation;
+
+import com.dotcms.ai.util.AIUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits plain text values and html text runs that are too large to translate in one go at paragraphs and finally
+ * sentences, and joins the translated chunks back together.  Storyblocks are not chunked, their text is already sent
+ * in small pieces by {@link StoryblockText}.
+ */
+class TranslationChunker {
+
+    /**
+     * chunk keys are the field key plus this separator plus the chunk index
+     */
+    static final String CHUNK_SEPARATOR = "#chunk";
+
+    static final Pattern PARAGRAPH = Pattern.compile("\\s*\\n\\s*\\n\\s*");
+
+    static final Pattern SENTENCE = Pattern.compile("(?<=[.!?])\\s+");
+
+    /**
+     * The chunks of a value and the original whitespace around them - separator i goes before chunk i and the last
+     * separator after the last chunk - so the value keeps its line breaks and spacing when it is joined back
+     */
+    static class Chunks {
+
+        final List<String> chunks;
+        final List<String> separators;
+
+        Chunks(List<String> chunks, List<String> separators) {
+            this.chunks = chunks;
+            this.separators = separators;
+        }
+
+        boolean isSplit() {
+            return chunks.size() > 1;
+        }
+    }
+
+    static Chunks split(String value, int maxTokens) {
+        if (AIUtil.estimateTokens(value) <= maxTokens) {
+            return new Chunks(List.of(value), List.of("", ""));
+        }
+        return splitText(value, maxTokens);
+    }
+
+    /**
+     * Puts the translated chunks back between the original separators.  Whitespace the model added or dropped at
+     * the edges of a chunk is replaced by the original.
+     */
+    static String join(Chunks chunks, List<String> translated) {
+        final StringBuilder joined = new StringBuilder(chunks.separators.get(0));
+        for (int i = 0; i < translated.size(); i++) {
+            joined.append(translated.get(i).strip())
+                    .append(chunks.separators.get(i + 1));
+        }
+        return joined.toString();
+    }
+
+    static Chunks splitText(String text, int maxTokens) {
+        final Chunks byParagraph = pack(text, PARAGRAPH, maxTokens);
+        if (byParagraph.isSplit() || PARAGRAPH.matcher(text.strip()).find()) {
+            return byParagraph;
+        }
+        return pack(text, SENTENCE, maxTokens);
+    }
+
+    /**
+     * Splits the text into pieces at the separator pattern and packs them into as few chunks as possible without
+     * going over maxTokens (unless a single piece does).  The separators found between chunks, and the whitespace
+     * before and after the text, are kept as they were.
+     */
+    static Chunks pack(String text, Pattern separator, int maxTokens) {
+        final String body = text.strip();
+        final int offset = text.indexOf(body);
+
+        final List<String> pieces = new ArrayList<>();
+        final List<String> gaps = new ArrayList<>();
+        final Matcher matcher = separator.matcher(body);
+        int last = 0;
+        while (matcher.find()) {
+            pieces.add(body.substring(last, matcher.start()));
+            gaps.add(matcher.group());
+            last = matcher.end();
+        }
+        pieces.add(body.substring(last));
+
+        final List<String> chunks = new ArrayList<>();
+        final List<String> separators = new ArrayList<>();
+        separators.add(text.substring(0, offset));
+        final StringBuilder current = new StringBuilder(pieces.get(0));
+        int tokens = AIUtil.estimateTokens(pieces.get(0));
+        for (int i = 1; i < pieces.size(); i++) {
+            final int pieceTokens = AIUtil.estimateTokens(pieces.get(i));
+            if (tokens + pieceTokens > maxTokens) {
+                chunks.add(current.toString());
+                separators.add(gaps.get(i - 1));
+                current.setLength(0);
+                tokens = 0;
+            } else {
+                current.append(gaps.get(i - 1));
+            }
+            current.append(pieces.get(i));
+            tokens += pieceTokens;
+        }
+        chunks.add(current.toString());
+        separators.add(text.substring(offset + body.length()));
+        return new Chunks(chunks, separators);
+    }
+
+}
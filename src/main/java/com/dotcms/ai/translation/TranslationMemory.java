@@ -0,0 +1,148 @@
+package com.dotcms.ai.translation;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.util.PluginTable;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.util.Logger;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers previously translated segments (field values) so re-translating a contentlet only sends what changed.
+ * A segment is keyed by the hash of its source value, the language pair, the model and the version of the glossary
+ * entries that apply to it.  Lookups go to a bounded in memory cache first and then to the
+ * {@link #TABLE} table.  Segments that have not been written or read from the table for
+ * {@link #AI_TRANSLATION_MEMORY_RETENTION_DAYS} are deleted once a day.
+ */
+public class TranslationMemory {
+
+    public static final String AI_TRANSLATION_MEMORY_ENABLED = "AI_TRANSLATION_MEMORY_ENABLED";
+
+    public static final String AI_TRANSLATION_MEMORY_SIZE = "AI_TRANSLATION_MEMORY_SIZE";
+
+    /**
+     * how long an unused segment is kept in the table, 0 keeps them forever
+     */
+    public static final String AI_TRANSLATION_MEMORY_RETENTION_DAYS = "AI_TRANSLATION_MEMORY_RETENTION_DAYS";
+
+    static final String TABLE = "dotai_translation_memory";
+
+    public static final Lazy<TranslationMemory> instance = Lazy.of(TranslationMemory::new);
+
+    private final Cache<String, String> cache = Caffeine.newBuilder()
+            .maximumSize(AIUtil.getIntProperty(AI_TRANSLATION_MEMORY_SIZE, 10000))
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    private final PluginTable table = new PluginTable(TABLE, () -> List.of("create table " + TABLE
+            + " (segment_key varchar(64) primary key, translation " + PluginTable.text() + " not null, mod_date "
+            + PluginTable.timestamp() + ")"));
+
+    private final ScheduledExecutorService cleaner;
+
+    TranslationMemory() {
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dotai-translation-memory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cleaner.scheduleWithFixedDelay(this::deleteUnused, 10, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    public static String key(String sourceValue, long sourceLang, long targetLang, String model, long glossaryVersion) {
+        return sha256(sha256(sourceValue) + "|" + sourceLang + "|" + targetLang + "|" + model + "|" + glossaryVersion);
+    }
+
+    public Optional<String> get(String key) {
+        final String cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (!table.ready()) {
+            return Optional.empty();
+        }
+        final Optional<String> stored = Try.of(() -> {
+            final List<Map<String, Object>> rows = new DotConnect()
+                    .setSQL("select translation, mod_date from " + TABLE + " where segment_key = ?")
+                    .addParam(key)
+                    .loadObjectResults();
+            if (rows.isEmpty()) {
+                return null;
+            }
+            touch(key, (Date) rows.get(0).get("mod_date"));
+            return (String) rows.get(0).get("translation");
+        }).onFailure(e -> Logger.warnAndDebug(this.getClass(), "Unable to read translation memory: " + e.getMessage(), e))
+                .toJavaOptional();
+        stored.ifPresent(translation -> cache.put(key, translation));
+        return stored;
+    }
+
+    public void put(String key, String translation) {
+        cache.put(key, translation);
+        if (!table.ready()) {
+            return;
+        }
+        Try.run(() -> table.upsert(List.of("segment_key"), List.of(key), List.of("translation", "mod_date"),
+                        List.of(translation, new Date())))
+                .onFailure(e -> Logger.warnAndDebug(this.getClass(),
+                        "Unable to write translation memory: " + e.getMessage(), e));
+    }
+
+    /**
+     * Moves the mod_date of a segment read from the table forward, at most once a day, so segments that are still
+     * used are not deleted as unused
+     */
+    void touch(String key, Date modDate) {
+        if (modDate != null && modDate.getTime() > System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)) {
+            return;
+        }
+        Try.run(() -> new DotConnect().executeUpdate("update " + TABLE + " set mod_date = ? where segment_key = ?",
+                new Date(), key));
+    }
+
+    void deleteUnused() {
+        final int days = AIUtil.getIntProperty(AI_TRANSLATION_MEMORY_RETENTION_DAYS, 180);
+        if (days <= 0) {
+            return;
+        }
+        try {
+            if (!table.ready()) {
+                return;
+            }
+            final int deleted = table.deleteOlderThan("mod_date", days);
+            Logger.info(this.getClass(), "Deleted " + deleted + " translation memory segments unused for " + days
+                    + " days");
+        } catch (Throwable e) {
+            Logger.warnAndDebug(this.getClass(), "Unable to clean up translation memory: " + e.getMessage(), e);
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    static String sha256(String value) {
+        final byte[] digest = Try.of(() -> MessageDigest.getInstance("SHA-256")
+                .digest(value.getBytes(StandardCharsets.UTF_8))).get();
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.dotcms.ai.translation;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotmarketing.util.Logger;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the model, temperature and max_tokens for translation segments by their size and type.  Short segments of
+ * the types listed in {@link #AI_TRANSLATION_FAST_SEGMENT_TYPES} - titles, teasers, language variables - go to the
+ * host's {@link #AI_TRANSLATION_FAST_MODEL}, everything else to the host's translation model.  Segments are packed
+ * into requests per route, and every request's route, size and latency are recorded in {@link #stats()}.
+ */
+public class TranslationRouter {
+
+    /**
+     * the model for short segments, routing is off when this is not set
+     */
+    static final String AI_TRANSLATION_FAST_MODEL = "AI_TRANSLATION_FAST_MODEL";
+
+    /**
+     * segments up to this many estimated tokens can use the fast model
+     */
+    static final String AI_TRANSLATION_FAST_MAX_TOKENS = "AI_TRANSLATION_FAST_MAX_TOKENS";
+
+    /**
+     * the segment types that can use the fast model - text, html and/or storyblock
+     */
+    static final String AI_TRANSLATION_FAST_SEGMENT_TYPES = "AI_TRANSLATION_FAST_SEGMENT_TYPES";
+
+    static final String AI_TRANSLATION_FAST_TEMPERATURE = "AI_TRANSLATION_FAST_TEMPERATURE";
+
+    /**
+     * when set, max_tokens is the estimated size of the request times this ratio (plus some room for the json),
+     * capped by AI_TRANSLATIONS_MAX_TOKENS when that is set.  Off by default - reasoning models reject max_tokens
+     */
+    static final String AI_TRANSLATION_OUTPUT_TOKEN_RATIO = "AI_TRANSLATION_OUTPUT_TOKEN_RATIO";
+
+    public static final Lazy<TranslationRouter> instance = Lazy.of(TranslationRouter::new);
+
+    enum SegmentType {
+        TEXT,
+        HTML,
+        STORYBLOCK
+    }
+
+    static class Route {
+
+        final String name;
+        final String model;
+        /**
+         * empty to leave it to the model, reasoning models reject a temperature
+         */
+        final Optional<Float> temperature;
+
+        Route(String name, String model, Optional<Float> temperature) {
+            this.name = name;
+            this.model = model;
+            this.temperature = temperature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Route)) {
+                return false;
+            }
+            final Route route = (Route) o;
+            return name.equals(route.name) && model.equals(route.model) && temperature.equals(route.temperature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, model, temperature);
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + model;
+        }
+    }
+
+    private final Map<String, AtomicLong[]> stats = new ConcurrentHashMap<>();
+
+    /**
+     * The route for one segment
+     * @param defaultRoute the host's translation model and temperature
+     */
+    Route route(String hostId, SegmentType type, String value, Route defaultRoute) {
+        final String fastModel = AIUtil.getStringSecret(hostId, AI_TRANSLATION_FAST_MODEL, null);
+        if (fastModel == null) {
+            return defaultRoute;
+        }
+        final List<String> fastTypes = Arrays.asList(AIUtil.getStringSecret(hostId,
+                AI_TRANSLATION_FAST_SEGMENT_TYPES, "text,storyblock").toUpperCase().split("[\\s,]+"));
+        if (!fastTypes.contains(type.name())
+                || AIUtil.estimateTokens(value) > AIUtil.getIntSecret(hostId, AI_TRANSLATION_FAST_MAX_TOKENS, 64)) {
+            return defaultRoute;
+        }
+        final Optional<Float> temperature = Try.of(() -> Float.parseFloat(
+                        AIUtil.getStringSecret(hostId, AI_TRANSLATION_FAST_TEMPERATURE, null)))
+                .map(Optional::of)
+                .getOrElse(defaultRoute.temperature);
+        return new Route("fast", fastModel, temperature);
+    }
+
+    /**
+     * max_tokens for a request of the given size, 0 if none should be sent - when neither
+     * {@link #AI_TRANSLATION_OUTPUT_TOKEN_RATIO} nor AI_TRANSLATIONS_MAX_TOKENS is set
+     * @param configuredMaxTokens the host's AI_TRANSLATIONS_MAX_TOKENS, 0 if not set
+     */
+    int maxTokens(String hostId, String requestJson, int configuredMaxTokens) {
+        final int ratio = AIUtil.getIntSecret(hostId, AI_TRANSLATION_OUTPUT_TOKEN_RATIO, 0);
+        if (ratio <= 0) {
+            return Math.max(0, configuredMaxTokens);
+        }
+        final int estimated = AIUtil.estimateTokens(requestJson) * ratio + 100;
+        return configuredMaxTokens > 0 ? Math.min(configuredMaxTokens, estimated) : estimated;
+    }
+
+    /**
+     * Records one request of the route
+     */
+    void record(Route route, int segments, int tokens, long millis, boolean failed) {
+        final AtomicLong[] counters = stats.computeIfAbsent(route.toString(),
+                k -> new AtomicLong[]{new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong(),
+                        new AtomicLong()});
+        counters[0].incrementAndGet();
+        counters[1].addAndGet(segments);
+        counters[2].addAndGet(tokens);
+        counters[3].addAndGet(millis);
+        if (failed) {
+            counters[4].incrementAndGet();
+        }
+        Logger.debug(this.getClass(), () -> "Translation request routed to " + route + ": " + segments
+                + " segments, ~" + tokens + " tokens, " + millis + "ms" + (failed ? " (failed)" : ""));
+    }
+
+    /**
+     * requests, segments, tokens, average latency and errors per route since the plugin was started
+     */
+    public Map<String, Map<String, Long>> stats() {
+        final Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        stats.forEach((route, counters) -> {
+            final Map<String, Long> routeStats = new LinkedHashMap<>();
+            routeStats.put("requests", counters[0].get());
+            routeStats.put("segments", counters[1].get());
+            routeStats.put("tokens", counters[2].get());
+            routeStats.put("avgMillis", counters[0].get() == 0 ? 0 : counters[3].get() / counters[0].get());
+            routeStats.put("errors", counters[4].get());
+            result.put(route, routeStats);
+        });
+        return result;
+    }
+
+}
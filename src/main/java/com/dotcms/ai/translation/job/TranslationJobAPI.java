@@ -0,0 +1,339 @@
+package com.dotcms.ai.translation.job;
+
+import com.dotcms.ai.client.AIPriority;
+import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.translation.workflow.OpenAITranslationActionlet;
+import com.dotcms.ai.translation.workflow.TranslationPersister;
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.util.PluginTable;
+import com.dotcms.contenttype.transform.field.LegacyFieldTransformer;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UUIDGenerator;
+import com.dotmarketing.util.UtilMethods;
+import com.liferay.portal.model.User;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Background translation jobs.  A job is one (contentlet, language) task per target language, kept in the
+ * {@link #TABLE} table so queued work survives restarts and can be picked up by any node in the cluster.  A poller
+ * claims pending tasks and hands them to a fixed pool of workers which translate and persist each language on its
+ * own, at {@link AIPriority#BULK} priority.  A claimed task gets a token that only the claiming worker knows, and its
+ * mod_date is refreshed while the worker runs it.  A task whose mod_date stops moving for
+ * {@link #AI_TRANSLATION_JOB_STALE_MINUTES} is queued again, and the worker that lost it can no longer persist or
+ * finish it.
+ */
+public class TranslationJobAPI {
+
+    public static final String AI_TRANSLATION_JOB_WORKERS = "AI_TRANSLATION_JOB_WORKERS";
+
+    public static final String AI_TRANSLATION_JOB_POLL_SECONDS = "AI_TRANSLATION_JOB_POLL_SECONDS";
+
+    public static final String AI_TRANSLATION_JOB_STALE_MINUTES = "AI_TRANSLATION_JOB_STALE_MINUTES";
+
+    static final String TABLE = "dotai_translation_task";
+
+    public static final Lazy<TranslationJobAPI> instance = Lazy.of(TranslationJobAPI::new);
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private final int workers = AIUtil.getIntProperty(AI_TRANSLATION_JOB_WORKERS, 4);
+    private final AtomicInteger running = new AtomicInteger();
+    private final PluginTable table = new PluginTable(TABLE, () -> List.of(
+            "create table " + TABLE + " (task_id varchar(36) primary key, job_id varchar(36) not null,"
+                    + " identifier varchar(36) not null, source_lang bigint not null, target_lang bigint not null,"
+                    + " fields " + PluginTable.text() + ", key_prefix varchar(255), live " + PluginTable.bool() + ","
+                    + " user_id varchar(255), status varchar(16) not null, claim_token varchar(36),"
+                    + " error " + PluginTable.text() + ", result_inode varchar(36), created " + PluginTable.timestamp()
+                    + ", mod_date " + PluginTable.timestamp() + ")",
+            "create index " + TABLE + "_status_idx on " + TABLE + " (status, created)",
+            "create index " + TABLE + "_job_idx on " + TABLE + " (job_id)"));
+
+    /**
+     * claim tokens of the tasks this node is running, by task id
+     */
+    private final Map<String, String> claimed = new ConcurrentHashMap<>();
+
+    private volatile long lastHeartbeat = 0;
+    private final ExecutorService workerPool;
+    private final ScheduledExecutorService poller;
+
+    TranslationJobAPI() {
+        final AtomicInteger count = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "dotai-translation-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dotai-translation-job-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final int pollSeconds = AIUtil.getIntProperty(AI_TRANSLATION_JOB_POLL_SECONDS, 5);
+        poller.scheduleWithFixedDelay(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues a task for each language and returns right away.  Tasks added with the same job id belong to the same
+     * job.
+     */
+    public void enqueue(String jobId, Contentlet source, List<Language> languages, List<String> fieldVars,
+            Optional<String> translationKeyPrefix, User user, boolean live) throws DotDataException {
+        if (!table.ready()) {
+            throw new DotDataException("Unable to create " + TABLE + ", translation jobs are not available");
+        }
+        final Date now = new Date();
+        for (Language language : languages) {
+            new DotConnect().executeUpdate("insert into " + TABLE
+                            + " (task_id, job_id, identifier, source_lang, target_lang, fields, key_prefix, live,"
+                            + " user_id, status, created, mod_date) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    UUIDGenerator.generateUuid(), jobId, source.getIdentifier(), source.getLanguageId(),
+                    language.getId(), String.join(",", fieldVars), translationKeyPrefix.orElse(null), live,
+                    user.getUserId(), Status.PENDING.name(), now, now);
+        }
+    }
+
+    /**
+     * The status of the job, its owner, the number of tasks in each state and every task with its result - the
+     * inode of the translated version once it is persisted.  Empty if there is no such job.
+     */
+    public Optional<Map<String, Object>> status(String jobId) {
+        if (!table.ready()) {
+            return Optional.empty();
+        }
+        final List<Map<String, Object>> tasks = Try.of(() -> new DotConnect()
+                .setSQL("select task_id, identifier, source_lang, target_lang, user_id, status, error, result_inode,"
+                        + " created, mod_date from " + TABLE + " where job_id = ? order by created, target_lang")
+                .addParam(jobId)
+                .loadObjectResults()).getOrElseThrow(DotRuntimeException::new);
+        if (tasks.isEmpty()) {
+            return Optional.empty();
+        }
+        final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        Arrays.stream(Status.values()).forEach(status -> counts.put(status, 0));
+        tasks.forEach(task -> counts.merge(Status.valueOf((String) task.get("status")), 1, Integer::sum));
+
+        final Map<String, Object> job = new LinkedHashMap<>();
+        job.put("jobId", jobId);
+        job.put("status", jobStatus(counts));
+        job.put("userId", tasks.get(0).get("user_id"));
+        job.put("counts", counts);
+        job.put("tasks", tasks);
+        return Optional.of(job);
+    }
+
+    static Status jobStatus(Map<Status, Integer> counts) {
+        if (counts.get(Status.RUNNING) > 0) {
+            return Status.RUNNING;
+        }
+        if (counts.get(Status.PENDING) > 0) {
+            return counts.get(Status.DONE) + counts.get(Status.FAILED) > 0 ? Status.RUNNING : Status.PENDING;
+        }
+        if (counts.get(Status.CANCELLED) > 0) {
+            return Status.CANCELLED;
+        }
+        return counts.get(Status.FAILED) > 0 ? Status.FAILED : Status.DONE;
+    }
+
+    /**
+     * Cancels the tasks of the job that are not finished yet.  A task that is already translating finishes its
+     * request but its result is not persisted.
+     * @return the number of tasks cancelled
+     */
+    public int cancel(String jobId) throws DotDataException {
+        if (!table.ready()) {
+            return 0;
+        }
+        return new DotConnect().executeUpdate("update " + TABLE + " set status = ?, mod_date = ? where job_id = ?"
+                        + " and status in (?, ?)", Status.CANCELLED.name(), new Date(), jobId, Status.PENDING.name(),
+                Status.RUNNING.name());
+    }
+
+    void poll() {
+        try {
+            if (!table.ready()) {
+                return;
+            }
+            heartbeat();
+            requeueStale();
+            final int free = workers - running.get();
+            if (free <= 0) {
+                return;
+            }
+            final List<Map<String, Object>> pending = new DotConnect()
+                    .setSQL("select task_id from " + TABLE + " where status = ? order by created")
+                    .addParam(Status.PENDING.name())
+                    .setMaxRows(free)
+                    .loadObjectResults();
+            for (Map<String, Object> row : pending) {
+                final String taskId = (String) row.get("task_id");
+                final Optional<String> token = claim(taskId);
+                if (token.isEmpty()) {
+                    continue;
+                }
+                running.incrementAndGet();
+                claimed.put(taskId, token.get());
+                workerPool.submit(() -> {
+                    try {
+                        run(taskId, token.get());
+                    } finally {
+                        claimed.remove(taskId);
+                        running.decrementAndGet();
+                        DbConnectionFactory.closeSilently();
+                    }
+                });
+            }
+        } catch (Throwable e) {
+            Logger.warnAndDebug(this.getClass(), "Unable to poll translation jobs: " + e.getMessage(), e);
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    /**
+     * Claims the task for this node, empty if another node got to it first
+     * @return the claim token that has to be passed to update the task from here on
+     */
+    Optional<String> claim(String taskId) throws DotDataException {
+        final String token = UUIDGenerator.generateUuid();
+        final boolean claimedHere = new DotConnect().executeUpdate("update " + TABLE + " set status = ?,"
+                        + " claim_token = ?, mod_date = ? where task_id = ? and status = ?", Status.RUNNING.name(),
+                token, new Date(), taskId, Status.PENDING.name()) == 1;
+        return claimedHere ? Optional.of(token) : Optional.empty();
+    }
+
+    /**
+     * Moves the mod_date of the tasks this node is running forward, about once a minute, so they are not taken
+     * for stale while they are still being translated
+     */
+    void heartbeat() throws DotDataException {
+        if (claimed.isEmpty() || System.currentTimeMillis() - lastHeartbeat < TimeUnit.MINUTES.toMillis(1)) {
+            return;
+        }
+        lastHeartbeat = System.currentTimeMillis();
+        final Date now = new Date();
+        for (Map.Entry<String, String> task : claimed.entrySet()) {
+            new DotConnect().executeUpdate("update " + TABLE + " set mod_date = ? where task_id = ? and claim_token = ?"
+                    + " and status = ?", now, task.getKey(), task.getValue(), Status.RUNNING.name());
+        }
+    }
+
+    /**
+     * Puts tasks back in the queue that were claimed by a node which died before finishing them
+     */
+    void requeueStale() throws DotDataException {
+        final long staleMillis = TimeUnit.MINUTES.toMillis(AIUtil.getIntProperty(AI_TRANSLATION_JOB_STALE_MINUTES, 30));
+        final int requeued = new DotConnect().executeUpdate("update " + TABLE + " set status = ?, claim_token = null"
+                        + " where status = ? and mod_date < ?", Status.PENDING.name(), Status.RUNNING.name(),
+                new Date(System.currentTimeMillis() - staleMillis));
+        if (requeued > 0) {
+            Logger.warn(this.getClass(), "Requeued " + requeued + " stale translation tasks");
+        }
+    }
+
+    void run(String taskId, String token) {
+        try {
+            final Map<String, Object> task = new DotConnect()
+                    .setSQL("select * from " + TABLE + " where task_id = ?")
+                    .addParam(taskId)
+                    .loadObjectResults().get(0);
+            final User user = Try.of(() -> APILocator.getUserAPI()
+                            .loadUserById((String) task.get("user_id"), APILocator.systemUser(), false))
+                    .getOrElse(APILocator.systemUser());
+            final Language target = APILocator.getLanguageAPI()
+                    .getLanguage(((Number) task.get("target_lang")).longValue());
+            final Contentlet source = APILocator.getContentletAPI().findContentletByIdentifier(
+                    (String) task.get("identifier"), false, ((Number) task.get("source_lang")).longValue(),
+                    APILocator.systemUser(), false);
+            if (UtilMethods.isSet((String) task.get("key_prefix"))) {
+                source.getMap().put(OpenAITranslationActionlet.TRANSLATION_KEY_PREFIX, task.get("key_prefix"));
+            }
+            final List<String> fieldVars = Arrays.asList(((String) task.get("fields")).split(","));
+            final List<com.dotmarketing.portlets.structure.model.Field> oldFields = new LegacyFieldTransformer(
+                    source.getContentType().fields().stream()
+                            .filter(f -> fieldVars.contains(f.variable()))
+                            .collect(Collectors.toList())).asOldFieldList();
+
+            final Try<Contentlet> translated = AIPriority.withPriority(AIPriority.BULK,
+                    () -> OpenAITranslationService.INSTANCE.get()
+                            .translateContentByLanguage(source, List.of(target), oldFields, APILocator.systemUser())
+                            .get(target.getId()));
+            if (translated.isFailure()) {
+                finish(taskId, token, Status.FAILED, translated.getCause().getMessage(), null);
+                return;
+            }
+            if (!isOwned(taskId, token)) {
+                Logger.info(this.getClass(), "Translation task " + taskId + " was cancelled or taken over by another"
+                        + " worker, not persisting it");
+                return;
+            }
+            final Contentlet persisted = translated.get() == null ? null
+                    : TranslationPersister.instance.get().persist(user, source, translated.get(),
+                            Boolean.TRUE.equals(task.get("live")));
+            finish(taskId, token, Status.DONE, null, persisted == null ? null : persisted.getInode());
+        } catch (Exception e) {
+            Logger.warnAndDebug(this.getClass(), "Translation task " + taskId + " failed: " + e.getMessage(), e);
+            Try.run(() -> finish(taskId, token, Status.FAILED, e.getMessage(), null));
+        }
+    }
+
+    /**
+     * false if the task was cancelled, or requeued and claimed again, since this worker claimed it
+     */
+    boolean isOwned(String taskId, String token) throws DotDataException {
+        final List<Map<String, Object>> rows = new DotConnect()
+                .setSQL("select status, claim_token from " + TABLE + " where task_id = ?")
+                .addParam(taskId)
+                .loadObjectResults();
+        return !rows.isEmpty() && Status.RUNNING.name().equals(rows.get(0).get("status"))
+                && token.equals(rows.get(0).get("claim_token"));
+    }
+
+    /**
+     * Sets the final status of a task, unless it is no longer owned by the worker holding the token
+     */
+    void finish(String taskId, String token, Status status, String error, String resultInode)
+            throws DotDataException {
+        final int updated = new DotConnect().executeUpdate("update " + TABLE + " set status = ?, error = ?,"
+                        + " result_inode = ?, mod_date = ? where task_id = ? and status = ? and claim_token = ?",
+                status.name(), error, resultInode, new Date(), taskId, Status.RUNNING.name(), token);
+        if (updated == 0) {
+            Logger.info(this.getClass(), "Translation task " + taskId + " is no longer owned by this worker, not"
+                    + " marking it " + status);
+        }
+    }
+
+    public void shutdown() {
+        poller.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+}
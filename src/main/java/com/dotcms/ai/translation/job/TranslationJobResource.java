@@ -0,0 +1,77 @@
+package com.dotcms.ai.translation.job;
+
+import com.dotcms.rest.ResponseEntityView;
+import com.dotcms.rest.WebResource;
+import com.dotcms.rest.annotation.NoCache;
+import com.liferay.portal.model.User;
+import java.util.Map;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Status and cancellation of background translation jobs.  Jobs can be seen and cancelled by the user that started
+ * them and by admins.
+ * <pre>
+ * GET    /api/v1/dotai/translation/jobs/{jobId}
+ * DELETE /api/v1/dotai/translation/jobs/{jobId}
+ * </pre>
+ */
+@Path("/v1/dotai/translation/jobs")
+public class TranslationJobResource {
+
+    private final WebResource webResource = new WebResource();
+
+    @GET
+    @Path("/{jobId}")
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public final Response getJob(@Context final HttpServletRequest request,
+            @Context final HttpServletResponse response, @PathParam("jobId") final String jobId) {
+
+        final User user = init(request, response);
+        final Optional<Map<String, Object>> job = TranslationJobAPI.instance.get().status(jobId);
+        if (job.isEmpty() || !canAccess(user, job.get())) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(new ResponseEntityView<>(job.get())).build();
+    }
+
+    @DELETE
+    @Path("/{jobId}")
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public final Response cancelJob(@Context final HttpServletRequest request,
+            @Context final HttpServletResponse response, @PathParam("jobId") final String jobId) throws Exception {
+
+        final User user = init(request, response);
+        final Optional<Map<String, Object>> job = TranslationJobAPI.instance.get().status(jobId);
+        if (job.isEmpty() || !canAccess(user, job.get())) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        TranslationJobAPI.instance.get().cancel(jobId);
+        return Response.ok(new ResponseEntityView<>(TranslationJobAPI.instance.get().status(jobId).get())).build();
+    }
+
+    private User init(final HttpServletRequest request, final HttpServletResponse response) {
+        return new WebResource.InitBuilder(webResource)
+                .requestAndResponse(request, response)
+                .requiredBackendUser(true)
+                .rejectWhenNoUser(true)
+                .init()
+                .getUser();
+    }
+
+    private boolean canAccess(final User user, final Map<String, Object> job) {
+        return user.isAdmin() || user.getUserId().equals(job.get("userId"));
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.dotcms.ai.translation.listener;
+
+import com.dotcms.ai.translation.GlossaryCache;
+import com.dotcms.content.elasticsearch.business.event.ContentletArchiveEvent;
+import com.dotcms.content.elasticsearch.business.event.ContentletDeletedEvent;
+import com.dotcms.content.elasticsearch.business.event.ContentletPublishEvent;
+import com.dotcms.contenttype.model.type.BaseContentType;
+import com.dotcms.system.event.local.model.Subscriber;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.contentlet.model.ContentletListener;
+import io.vavr.control.Try;
+
+/**
+ * Keeps the {@link GlossaryCache} in sync with the KEY_VALUE (language variable) contentlets it is built from.
+ */
+public class GlossaryInvalidationListener implements ContentletListener<Contentlet> {
+
+    static final String KEY_FIELD_VAR = "key";
+
+    @Override
+    public String getId() {
+        return this.getClass().getCanonicalName();
+    }
+
+    @Subscriber
+    public void onPublish(final ContentletPublishEvent<Contentlet> event) {
+        invalidate(event.getContentlet());
+    }
+
+    @Subscriber
+    public void onArchive(final ContentletArchiveEvent<Contentlet> event) {
+        invalidate(event.getContentlet());
+    }
+
+    @Subscriber
+    public void onDelete(final ContentletDeletedEvent<Contentlet> event) {
+        invalidate(event.getContentlet());
+    }
+
+    void invalidate(Contentlet contentlet) {
+        final boolean isKeyValue = Try.of(
+                () -> contentlet.getContentType().baseType() == BaseContentType.KEY_VALUE).getOrElse(false);
+        if (!isKeyValue) {
+            return;
+        }
+        GlossaryCache.instance.get()
+                .invalidate(Try.of(() -> contentlet.getStringProperty(KEY_FIELD_VAR)).getOrNull(),
+                        contentlet.getLanguageId());
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.dotcms.ai.translation.listener;
+
+import com.dotcms.ai.translation.workflow.PreTranslator;
+import com.dotcms.content.elasticsearch.business.event.ContentletCheckinEvent;
+import com.dotcms.system.event.local.model.Subscriber;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.contentlet.model.ContentletListener;
+
+/**
+ * Hands saved working versions to the {@link PreTranslator} for the content types that opted in.
+ */
+public class PreTranslationListener implements ContentletListener<Contentlet> {
+
+    @Override
+    public String getId() {
+        return this.getClass().getCanonicalName();
+    }
+
+    @Subscriber
+    public void onCheckin(final ContentletCheckinEvent<Contentlet> event) {
+        final Contentlet contentlet = event.getContentlet();
+        if (PreTranslator.instance.get().shouldPretranslate(contentlet)) {
+            PreTranslator.instance.get().schedule(contentlet);
+        }
+    }
+
+}
@@ -1,18 +1,18 @@
 package com.dotcms.ai.translation.workflow;
 
 import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.translation.job.TranslationJobAPI;
 import com.dotcms.contenttype.model.field.Field;
-import com.dotcms.contenttype.transform.field.LegacyFieldTransformer;
-import com.dotcms.translate.TranslationException;
+import com.dotcms.contenttype.model.type.ContentType;
 import com.dotmarketing.business.APILocator;
-import com.dotmarketing.cache.FieldsCache;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.languagesmanager.model.Language;
-import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.portlets.workflows.actionlet.Actionlet;
+import com.dotmarketing.portlets.workflows.actionlet.BatchAction;
 import com.dotmarketing.portlets.workflows.actionlet.TranslationActionlet;
+import com.dotmarketing.portlets.workflows.model.WorkflowActionClass;
 import com.dotmarketing.portlets.workflows.model.WorkflowActionClassParameter;
 import com.dotmarketing.portlets.workflows.model.WorkflowActionFailureException;
 import com.dotmarketing.portlets.workflows.model.WorkflowActionletParameter;
@@ -21,26 +21,32 @@ import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UUIDGenerator;
 import com.dotmarketing.util.UtilMethods;
 import com.liferay.portal.model.User;
-import com.liferay.util.FileUtil;
 import io.vavr.control.Try;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 
 @Actionlet(onlyBatch = true)
-public class OpenAITranslationActionlet extends TranslationActionlet {
+public class OpenAITranslationActionlet extends TranslationActionlet implements BatchAction<String> {
 
 
     static final public String TRANSLATION_KEY_PREFIX = "translationkeyPrefix";
     static final String TRANSLATE_TO = "translateTo";
     static final String FIELD_TYPES = "fieldTypes";
+    static final String DEFAULT_FIELD_TYPES = "text,wysiwyg,textarea,storyblock";
     static final String TRANSLATE_FIELDS = "translateFields";
     static final String IGNORE_FIELDS = "ignoreFields";
+    static final String ASYNC = "async";
+    static final public String TRANSLATION_JOB_ID = "translationJobId";
     static final String COMMA_SPLITER = "[,\\s]+";
     static int MAX_LANGUAGE_VARIABLE_CONTEXT = 1000;
 
@@ -56,7 +62,7 @@ public class OpenAITranslationActionlet extends TranslationActionlet {
                 "Translation to these languages (comma separated lang or lang-country codes or `*` for all )", "*",
                 false));
         params.add(new WorkflowActionletParameter(FIELD_TYPES,
-                "Always Translate these Field types (optional, comma separated)", "text,wysiwyg,textarea,storyblock",
+                "Always Translate these Field types (optional, comma separated)", DEFAULT_FIELD_TYPES,
                 true));
         params.add(new WorkflowActionletParameter(TRANSLATE_FIELDS,
                 "Then also always translate these Fields (optional, comma separated var names)", "", false));
@@ -65,6 +71,9 @@ public class OpenAITranslationActionlet extends TranslationActionlet {
         params.add(new WorkflowActionletParameter(TRANSLATION_KEY_PREFIX,
                 "Language variable prefix to include as glossary - this is the prefix of language variables that you want to include as glossary for the translation. Leave empty for none.  Set to `*` for all (up to "
                         + MAX_LANGUAGE_VARIABLE_CONTEXT + ").", "", false));
+        params.add(new WorkflowActionletParameter(ASYNC,
+                "Translate in the background as a translation job (true/false) - the job can be followed and cancelled at /api/v1/dotai/translation/jobs/{jobId}",
+                "false", false));
 
         return params;
     }
@@ -83,53 +92,193 @@ public class OpenAITranslationActionlet extends TranslationActionlet {
     public void executeAction(WorkflowProcessor processor, Map<String, WorkflowActionClassParameter> params)
             throws WorkflowActionFailureException {
 
-        final Contentlet sourceContentlet = processor.getContentlet();
-        final User user = processor.getUser();
-        final Optional<String> translationKeyPrefix = Try.of(() -> params.get(TRANSLATION_KEY_PREFIX).getValue().trim())
-                .toJavaOptional();
-        final List<Language> languages = new ArrayList<>(languagesToTranslate(params.get(TRANSLATE_TO).getValue()));
-        languages.removeIf(lang -> lang.getId() == sourceContentlet.getLanguageId());
-        Set<Field> fields = getIncludedFields(sourceContentlet,
-                params.get(FIELD_TYPES).getValue(),
-                params.get(IGNORE_FIELDS).getValue(),
-                params.get(TRANSLATE_FIELDS).getValue());
+        if (enqueue(processor, params)) {
+            return;
+        }
+        try {
+            translate(List.of(processor.getContentlet()), params, processor.getUser());
+        } catch (Exception e) {
+            Logger.error(this.getClass(), "Error translating contentlet:" + e.getMessage(), e);
+            throw new WorkflowActionFailureException("Error translating contentlet", e);
+        }
+    }
+
+    /**
+     * In a bulk action each contentlet is only collected here and they are all translated together in
+     * {@link #executeBatchAction}, so short contentlets can share requests.
+     */
+    @Override
+    public void preBatchAction(WorkflowProcessor processor, WorkflowActionClass actionClass,
+            Map<String, WorkflowActionClassParameter> params) {
 
-        if (translationKeyPrefix.isPresent()) {
-            sourceContentlet.getMap().put(TRANSLATION_KEY_PREFIX, translationKeyPrefix.get());
+        if (enqueue(processor, params)) {
+            return;
         }
+        final Contentlet contentlet = processor.getContentlet();
+        getObjectsForBatch(processor.getContextMap(), actionClass)
+                .add(contentlet.getIdentifier() + ":" + contentlet.getLanguageId());
+    }
 
-        List<com.dotmarketing.portlets.structure.model.Field> oldFields = new LegacyFieldTransformer(
-                new ArrayList(fields)).asOldFieldList();
+    /**
+     * Translates the collected contentlets together.  Fails the action with a {@link DotDataException} if a
+     * contentlet could not be loaded or the translation could not be run - languages that fail for a single
+     * contentlet are only logged.
+     */
+    @Override
+    public void executeBatchAction(User user, ConcurrentMap<String, Object> context,
+            WorkflowActionClass workflowActionClass, Map<String, WorkflowActionClassParameter> params)
+            throws DotDataException, DotSecurityException {
 
-        try {
-            List<Contentlet> translatedContents = OpenAITranslationService.INSTANCE.get()
-                    .translateContent(sourceContentlet, languages, oldFields, APILocator.systemUser());
-
-            final boolean live = sourceContentlet.isLive();
-
-            for (final Contentlet translatedContent : translatedContents) {
-                sourceContentlet.setTags();
-                copyBinariesAndTags(processor.getUser(), sourceContentlet, translatedContent);
-                translatedContent.setProperty(Contentlet.DISABLE_WORKFLOW, true);
-                translatedContent.setProperty(Contentlet.DONT_VALIDATE_ME, true);
-                Contentlet persisted = APILocator.getContentletAPI().checkin(translatedContent, user, false);
-                if (live) {
-                    APILocator.getContentletAPI().publish(translatedContent, user, false);
-                }
-                APILocator.getContentletAPI().unlock(translatedContent, user, false);
-            }
+        final List<String> identifierLangs = new ArrayList<>(getObjectsForBatch(context, workflowActionClass));
+        if (identifierLangs.isEmpty()) {
+            return;
+        }
+        final List<Contentlet> contentlets = new ArrayList<>();
+        final List<String> notLoaded = new ArrayList<>();
+        for (String identifierLang : identifierLangs) {
+            final String[] parts = identifierLang.split(":");
+            Try.of(() -> APILocator.getContentletAPI().findContentletByIdentifier(parts[0], false,
+                            Long.parseLong(parts[1]), APILocator.systemUser(), false))
+                    .onFailure(e -> Logger.warnAndDebug(this.getClass(),
+                            "Unable to load " + identifierLang + " for translation: " + e.getMessage(), e))
+                    .onFailure(e -> notLoaded.add(identifierLang))
+                    .forEach(contentlets::add);
+        }
+        final long start = System.currentTimeMillis();
+        final Try<Void> translated = Try.run(() -> translate(contentlets, params, user))
+                .onFailure(e -> Logger.error(this.getClass(), "Error translating contentlets:" + e.getMessage(), e));
+        Logger.info(this.getClass(), "Bulk translated " + contentlets.size() + " contentlets in "
+                + (System.currentTimeMillis() - start) + "ms");
+        if (translated.isFailure()) {
+            throw new DotDataException("Error translating contentlets: " + translated.getCause().getMessage(),
+                    translated.getCause());
+        }
+        if (!notLoaded.isEmpty()) {
+            throw new DotDataException("Unable to load contentlets for translation: " + notLoaded);
+        }
+    }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<String> getObjectsForBatch(ConcurrentMap<String, Object> context,
+            WorkflowActionClass workflowActionClass) {
+        return (List<String>) context.computeIfAbsent(
+                OpenAITranslationActionlet.class.getName() + workflowActionClass.getId(),
+                k -> new CopyOnWriteArrayList<String>());
+    }
 
-        } catch (Exception e) {
-            Logger.error(this.getClass(), "Error translating contentlet:" + e.getMessage(), e);
-            throw new WorkflowActionFailureException("Error translating contentlet", e);
+    /**
+     * Queues the contentlet as a background translation job if the action is async.  Returns false if it has to be
+     * translated now, either because the action is not async or because the job could not be queued.
+     */
+    boolean enqueue(WorkflowProcessor processor, Map<String, WorkflowActionClassParameter> params) {
+        if (!isAsync(params)) {
+            return false;
+        }
+        final Contentlet sourceContentlet = processor.getContentlet();
+        final TranslationPlan plan = plan(sourceContentlet, params);
+        final List<Language> languages = plan.languagesFrom(sourceContentlet.getLanguageId());
+
+        // every contentlet of a bulk action goes into the same job
+        final String jobId = Try.of(() -> (String) processor.getContextMap()
+                        .computeIfAbsent(TRANSLATION_JOB_ID, k -> UUIDGenerator.generateUuid()))
+                .getOrElseGet(e -> UUIDGenerator.generateUuid());
+        final boolean queued = Try.run(() -> TranslationJobAPI.instance.get().enqueue(jobId, sourceContentlet,
+                        languages, plan.fieldVars, plan.translationKeyPrefix, processor.getUser(),
+                        sourceContentlet.isLive()))
+                .onFailure(e -> Logger.warnAndDebug(this.getClass(),
+                        "Unable to queue translation job, translating now: " + e.getMessage(), e))
+                .isSuccess();
+        if (queued) {
+            sourceContentlet.getMap().put(TRANSLATION_JOB_ID, jobId);
+            Logger.info(this.getClass(), "Queued translation of " + sourceContentlet.getIdentifier() + " into "
+                    + languages.size() + " languages as job " + jobId);
         }
+        return queued;
+    }
+
+    boolean isAsync(Map<String, WorkflowActionClassParameter> params) {
+        return Try.of(() -> Boolean.parseBoolean(params.get(ASYNC).getValue().trim())).getOrElse(false);
+    }
+
+    /**
+     * The compiled plan for this action and the contentlet's content type
+     */
+    TranslationPlan plan(Contentlet contentlet, Map<String, WorkflowActionClassParameter> params) {
+        final ContentType contentType = contentlet.getContentType();
+        final StringBuilder key = new StringBuilder()
+                .append(params.values().stream().findFirst().map(WorkflowActionClassParameter::getActionClassId)
+                        .orElse(""))
+                .append('|').append(contentType.id())
+                .append('|').append(contentType.modDate() != null ? contentType.modDate().getTime() : 0);
+        for (String param : List.of(TRANSLATE_TO, FIELD_TYPES, TRANSLATE_FIELDS, IGNORE_FIELDS,
+                TRANSLATION_KEY_PREFIX, ASYNC)) {
+            key.append('|').append(Try.of(() -> params.get(param).getValue()).getOrElse(""));
+        }
+        return TranslationPlan.get(key.toString(), () -> new TranslationPlan(
+                languagesToTranslate(params.get(TRANSLATE_TO).getValue()),
+                includedFields(contentType,
+                        params.get(FIELD_TYPES).getValue(),
+                        params.get(IGNORE_FIELDS).getValue(),
+                        params.get(TRANSLATE_FIELDS).getValue()),
+                Try.of(() -> params.get(TRANSLATION_KEY_PREFIX).getValue().trim())
+                        .filter(UtilMethods::isSet)
+                        .toJavaOptional(),
+                isAsync(params)));
+    }
+
+    /**
+     * Translates the contentlets into every language and persists each translated version as soon as it is done,
+     * while the rest are still translating.
+     */
+    void translate(List<Contentlet> contentlets, Map<String, WorkflowActionClassParameter> params, User user)
+            throws Exception {
 
+        if (contentlets.isEmpty()) {
+            return;
+        }
+        final Map<String, Contentlet> sources = new HashMap<>();
+        for (Contentlet contentlet : contentlets) {
+            plan(contentlet, params).translationKeyPrefix
+                    .ifPresent(prefix -> contentlet.getMap().put(TRANSLATION_KEY_PREFIX, prefix));
+            sources.put(contentlet.getInode(), contentlet);
+        }
 
+        final Map<String, Map<Long, CompletableFuture<Contentlet>>> translations = OpenAITranslationService.INSTANCE
+                .get().translateContentBatchAsync(contentlets, plan(contentlets.get(0), params).languages,
+                        contentlet -> plan(contentlet, params).oldFields, APILocator.systemUser());
+
+        // versions are persisted in the order their translations finish, while the rest are still translating
+        final BlockingQueue<Map.Entry<String, Long>> finished = new LinkedBlockingQueue<>();
+        translations.forEach((inode, byLanguage) -> byLanguage.forEach((langId, future) ->
+                future.whenComplete((c, e) -> finished.add(Map.entry(inode, langId)))));
+        final int total = translations.values().stream().mapToInt(Map::size).sum();
+
+        final Map<String, List<Long>> failedLanguages = new HashMap<>();
+        try (SharedBinaries binaries = TranslationPersister.instance.get().sharedBinaries(user)) {
+            for (int i = 0; i < total; i++) {
+                final Map.Entry<String, Long> done = finished.take();
+                final Contentlet sourceContentlet = sources.get(done.getKey());
+                final Try<Contentlet> translated = OpenAITranslationService.INSTANCE.get()
+                        .result(sourceContentlet, done.getValue(),
+                                translations.get(done.getKey()).get(done.getValue()));
+                if (translated.isFailure()) {
+                    failedLanguages.computeIfAbsent(sourceContentlet.getIdentifier(), k -> new ArrayList<>())
+                            .add(done.getValue());
+                    continue;
+                }
+                if (translated.get() != null) {
+                    TranslationPersister.instance.get().persist(user, sourceContentlet, translated.get(),
+                            sourceContentlet.isLive(), binaries);
+                }
+            }
+        }
+        failedLanguages.forEach((identifier, langIds) -> Logger.warn(this.getClass(), "Contentlet " + identifier
+                + " could not be translated into languages " + langIds));
     }
 
 
-    List<Language> languagesToTranslate(String translateToIn) {
+    static List<Language> languagesToTranslate(String translateToIn) {
         String translateTo = Try.of(
                 () -> "all".equalsIgnoreCase(translateToIn.trim()) || "*".equalsIgnoreCase(translateToIn.trim()) ? ""
                         : translateToIn).getOrNull();
@@ -156,8 +305,17 @@ public class OpenAITranslationActionlet extends TranslationActionlet {
 
     Set<Field> getIncludedFields(Contentlet contentlet, String fieldTypesStr, String ignoreFieldsStr,
             String translateFieldsStr) {
+        return new LinkedHashSet<>(includedFields(contentlet.getContentType(), fieldTypesStr, ignoreFieldsStr,
+                translateFieldsStr));
+    }
 
-        final List<String> fieldTypes = Try.of(() -> Arrays.asList(fieldTypesStr.trim().split(COMMA_SPLITER)))
+    /**
+     * The fields of the content type to translate, in field order
+     */
+    static List<Field> includedFields(ContentType contentType, String fieldTypesStr, String ignoreFieldsStr,
+            String translateFieldsStr) {
+
+        final List<String> fieldTypes = Try.of(() -> Arrays.asList(fieldTypesStr.trim().toLowerCase().split(COMMA_SPLITER)))
                 .getOrElse(List.of());
 
         final List<String> ignoreFields = Try.of(() -> Arrays.asList(ignoreFieldsStr.trim().split(COMMA_SPLITER)))
@@ -166,76 +324,18 @@ public class OpenAITranslationActionlet extends TranslationActionlet {
         final List<String> translateFields = Try.of(() -> Arrays.asList(translateFieldsStr.trim().split(COMMA_SPLITER)))
                 .getOrElse(List.of());
 
-        Set<Field> fields = new HashSet<>();
+        final List<Field> fields = new ArrayList<>();
 
-        for (Field f : contentlet.getContentType().fields()) {
-            for (String type : fieldTypes) {
-                if (f.getClass().getSimpleName().toLowerCase().contains(type + "field")) {
-                    fields.add(f);
-                }
-            }
-            for (String translate : translateFields) {
-                if (f.variable().equalsIgnoreCase(translate)) {
-                    fields.add(f);
-                }
-            }
-            for (String ignore : ignoreFields) {
-                if (f.variable().equalsIgnoreCase(ignore)) {
-                    fields.remove(f);
-                }
+        for (Field f : contentType.fields()) {
+            final String fieldClass = f.getClass().getSimpleName().toLowerCase();
+            final boolean included = fieldTypes.stream().anyMatch(type -> fieldClass.contains(type + "field"))
+                    || translateFields.stream().anyMatch(translate -> f.variable().equalsIgnoreCase(translate));
+            final boolean ignored = ignoreFields.stream().anyMatch(ignore -> f.variable().equalsIgnoreCase(ignore));
+            if (included && !ignored) {
+                fields.add(f);
             }
         }
 
         return fields;
     }
-
-    void copyBinariesAndTags(final User user, final Contentlet sourceContentlet, final Contentlet translatedContent)
-            throws DotDataException, DotSecurityException, TranslationException {
-
-        final Structure structure = translatedContent.getStructure();
-        final List<com.dotmarketing.portlets.structure.model.Field> list = FieldsCache.getFieldsByStructureInode(
-                structure.getInode());
-
-        for (final com.dotmarketing.portlets.structure.model.Field field : list) {
-            if (com.dotmarketing.portlets.structure.model.Field.FieldType.BINARY.toString()
-                    .equals(field.getFieldType())) {
-
-                final java.io.File inputFile = APILocator
-                        .getContentletAPI()
-                        .getBinaryFile(sourceContentlet.getInode(), field.getVelocityVarName(), user);
-                if (inputFile != null) {
-
-                    final java.io.File acopyFolder = new java.io.File(
-                            APILocator.getFileAssetAPI().getRealAssetPathTmpBinary()
-                                    + java.io.File.separator + user.getUserId() + java.io.File.separator
-                                    + field.getFieldContentlet()
-                                    + java.io.File.separator + UUIDGenerator.generateUuid());
-
-                    if (!acopyFolder.exists()) {
-                        acopyFolder.mkdir();
-                    }
-
-                    final String shortFileName = FileUtil.getShortFileName(inputFile.getAbsolutePath());
-                    final java.io.File binaryFile = new java.io.File(
-                            APILocator.getFileAssetAPI().getRealAssetPathTmpBinary()
-                                    + java.io.File.separator + user.getUserId() + java.io.File.separator
-                                    + field.getFieldContentlet()
-                                    + java.io.File.separator + shortFileName.trim());
-
-                    try {
-
-                        FileUtil.copyFile(inputFile, binaryFile);
-                        translatedContent.setBinary(field.getVelocityVarName(), binaryFile);
-                    } catch (IOException e) {
-                        throw new TranslationException(e);
-                    }
-                }
-            } else if (field.getFieldType()
-                    .equals(com.dotmarketing.portlets.structure.model.Field.FieldType.TAG.toString())) {
-
-                translatedContent.setStringProperty(field.getVelocityVarName(),
-                        sourceContentlet.getStringProperty(field.getVelocityVarName()));
-            }
-        }
-    }
 }
@@ -0,0 +1,164 @@
+package com.dotcms.ai.translation.workflow;
+
+import com.dotcms.ai.client.AIPriority;
+import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.contenttype.model.field.Field;
+import com.dotcms.contenttype.transform.field.LegacyFieldTransformer;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.dotmarketing.portlets.workflows.business.WorkflowAPI;
+import com.dotmarketing.portlets.workflows.model.WorkflowAction;
+import com.dotmarketing.portlets.workflows.model.WorkflowActionClass;
+import com.dotmarketing.portlets.workflows.model.WorkflowScheme;
+import com.dotmarketing.util.Logger;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculatively translates content when a working version is saved, so the translate workflow finds the
+ * translations already in the translation memory.  Opt-in per host by listing content types in
+ * {@link #AI_TRANSLATION_PRETRANSLATE_CONTENTTYPES}.  Saves are debounced per contentlet - only the last save in a
+ * burst is translated - and the translation runs at {@link AIPriority#BULK} priority.  Only content in the default
+ * language is pre-translated.  The languages, fields and glossary prefix are taken from the translate action in the
+ * content type's workflows, the pre-translate secrets are only used when there is none.
+ */
+public class PreTranslator {
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_CONTENTTYPES = "AI_TRANSLATION_PRETRANSLATE_CONTENTTYPES";
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_LANGUAGES = "AI_TRANSLATION_PRETRANSLATE_LANGUAGES";
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_FIELD_TYPES = "AI_TRANSLATION_PRETRANSLATE_FIELD_TYPES";
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_KEY_PREFIX = "AI_TRANSLATION_PRETRANSLATE_KEY_PREFIX";
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_DEBOUNCE_SECONDS = "AI_TRANSLATION_PRETRANSLATE_DEBOUNCE_SECONDS";
+
+    public static final String AI_TRANSLATION_PRETRANSLATE_THREADS = "AI_TRANSLATION_PRETRANSLATE_THREADS";
+
+    public static final Lazy<PreTranslator> instance = Lazy.of(PreTranslator::new);
+
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    PreTranslator() {
+        final AtomicInteger count = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(AIUtil.getIntProperty(AI_TRANSLATION_PRETRANSLATE_THREADS, 2),
+                r -> {
+                    Thread thread = new Thread(r, "dotai-pretranslate-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public boolean shouldPretranslate(Contentlet contentlet) {
+        final List<String> contentTypes = Arrays.asList(AIUtil.getStringSecret(contentlet.getHost(),
+                AI_TRANSLATION_PRETRANSLATE_CONTENTTYPES, "").toLowerCase().split("[\\s,]+"));
+        return Try.of(() -> contentTypes.contains(contentlet.getContentType().variable().toLowerCase())
+                        && contentlet.getLanguageId() == APILocator.getLanguageAPI().getDefaultLanguage().getId())
+                .getOrElse(false);
+    }
+
+    /**
+     * (Re)starts the debounce timer for the contentlet, dropping any pre-translation still waiting for it
+     */
+    public void schedule(Contentlet contentlet) {
+        final String identifier = contentlet.getIdentifier();
+        final long languageId = contentlet.getLanguageId();
+        final String key = identifier + ":" + languageId;
+        final int delay = AIUtil.getIntSecret(contentlet.getHost(), AI_TRANSLATION_PRETRANSLATE_DEBOUNCE_SECONDS, 30);
+        pending.compute(key, (k, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return scheduler.schedule(() -> run(key, identifier, languageId), delay, TimeUnit.SECONDS);
+        });
+    }
+
+    void run(String key, String identifier, long languageId) {
+        pending.remove(key);
+        try {
+            final Contentlet contentlet = APILocator.getContentletAPI().findContentletByIdentifier(identifier, false,
+                    languageId, APILocator.systemUser(), false);
+            final Optional<TranslationPlan> actionPlan = actionPlan(contentlet);
+            final List<Language> languages;
+            final List<com.dotmarketing.portlets.structure.model.Field> oldFields;
+            final Optional<String> prefix;
+            if (actionPlan.isPresent()) {
+                languages = actionPlan.get().languagesFrom(languageId);
+                oldFields = actionPlan.get().oldFields;
+                prefix = actionPlan.get().translationKeyPrefix;
+            } else {
+                final String hostId = contentlet.getHost();
+                Logger.debug(this.getClass(), () -> "No translate action found for " + identifier
+                        + ", pre-translating with the " + AI_TRANSLATION_PRETRANSLATE_FIELD_TYPES + " and "
+                        + AI_TRANSLATION_PRETRANSLATE_KEY_PREFIX + " secrets");
+                languages = OpenAITranslationActionlet.languagesToTranslate(
+                        AIUtil.getStringSecret(hostId, AI_TRANSLATION_PRETRANSLATE_LANGUAGES, "*"));
+                final List<Field> fields = OpenAITranslationActionlet.includedFields(contentlet.getContentType(),
+                        AIUtil.getStringSecret(hostId, AI_TRANSLATION_PRETRANSLATE_FIELD_TYPES,
+                                OpenAITranslationActionlet.DEFAULT_FIELD_TYPES), "", "");
+                oldFields = new LegacyFieldTransformer(new ArrayList<>(fields)).asOldFieldList();
+                prefix = Optional.ofNullable(AIUtil.getStringSecret(hostId, AI_TRANSLATION_PRETRANSLATE_KEY_PREFIX,
+                        null));
+            }
+            prefix.ifPresent(p -> contentlet.getMap().put(OpenAITranslationActionlet.TRANSLATION_KEY_PREFIX, p));
+            final long start = System.currentTimeMillis();
+            AIPriority.withPriority(AIPriority.BULK, () -> {
+                OpenAITranslationService.INSTANCE.get().pretranslate(contentlet, languages, oldFields);
+                return null;
+            });
+            Logger.debug(this.getClass(), () -> "Pre-translated " + identifier + " into " + languages.size()
+                    + " languages in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            Logger.warnAndDebug(this.getClass(), "Unable to pre-translate " + identifier + ": " + e.getMessage(), e);
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    /**
+     * The plan of the first translate action in the workflows of the contentlet's content type, so the segments are
+     * pre-translated with the same fields and glossary prefix the action will later ask for - segments translated
+     * with another glossary would never be found in translation memory
+     */
+    Optional<TranslationPlan> actionPlan(Contentlet contentlet) {
+        return Try.of(() -> {
+            final WorkflowAPI workflowAPI = APILocator.getWorkflowAPI();
+            for (WorkflowScheme scheme : workflowAPI.findSchemesForContentType(contentlet.getContentType())) {
+                for (WorkflowAction action : workflowAPI.findActions(scheme, APILocator.systemUser())) {
+                    for (WorkflowActionClass actionClass : workflowAPI.findActionClasses(action)) {
+                        if (actionClass.getActionlet() instanceof OpenAITranslationActionlet) {
+                            return Optional.of(((OpenAITranslationActionlet) actionClass.getActionlet())
+                                    .plan(contentlet, workflowAPI.findParamsForActionClass(actionClass)));
+                        }
+                    }
+                }
+            }
+            return Optional.<TranslationPlan>empty();
+        }).onFailure(e -> Logger.debug(this.getClass(), "Unable to read the translate action of "
+                        + contentlet.getContentType().variable() + ": " + e.getMessage()))
+                .getOrElse(Optional.empty());
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.clear();
+    }
+
+}
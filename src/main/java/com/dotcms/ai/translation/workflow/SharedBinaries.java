@@ -0,0 +1,83 @@
+package com.dotcms.ai.translation.workflow;
+
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UUIDGenerator;
+import com.liferay.util.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares the binary files of a source contentlet with its translated versions for the length of one translation
+ * run.  Each source file is staged once as a hard link and every translated version gets a hard link to the staged
+ * file, so the binary is not written to disk again no matter how many languages it is translated into.  Where the
+ * file system does not allow links the source is copied straight into each translated version, without a staged
+ * copy in between.  Call {@link #close()} when the run is done to remove the staged links.
+ */
+class SharedBinaries implements AutoCloseable {
+
+    private final File stagingFolder;
+    private final Map<String, Path> staged = new HashMap<>();
+    private final Set<String> notLinkable = new HashSet<>();
+    private int linked = 0;
+    private int copied = 0;
+
+    SharedBinaries(File stagingFolder) {
+        this.stagingFolder = stagingFolder;
+    }
+
+    /**
+     * Returns a file with the content of source inside of targetFolder that can be handed to a contentlet as its
+     * binary.
+     */
+    File share(File source, File targetFolder, String fileName) throws IOException {
+        final String key = source.getAbsolutePath();
+        final Path target = targetFolder.toPath().resolve(fileName);
+        if (!notLinkable.contains(key)) {
+            Path stagedFile = staged.get(key);
+            if (stagedFile == null) {
+                stagedFile = stagingFolder.toPath().resolve(UUIDGenerator.generateUuid()).resolve(fileName);
+                if (link(source.toPath(), stagedFile)) {
+                    staged.put(key, stagedFile);
+                } else {
+                    notLinkable.add(key);
+                    stagedFile = null;
+                }
+            }
+            if (stagedFile != null && link(stagedFile, target)) {
+                return target.toFile();
+            }
+        }
+        Files.createDirectories(target.getParent());
+        Files.copy(source.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        copied++;
+        return target.toFile();
+    }
+
+    private boolean link(Path from, Path to) {
+        try {
+            Files.createDirectories(to.getParent());
+            Files.deleteIfExists(to);
+            Files.createLink(to, from);
+            linked++;
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            Logger.debug(this.getClass(), "Unable to link " + from + ", copying it instead: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        Logger.debug(this.getClass(), "Shared " + staged.size() + " binaries, " + linked + " links, " + copied + " copies");
+        FileUtil.deltree(stagingFolder);
+        staged.clear();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.dotcms.ai.translation.workflow;
+
+import com.dotcms.translate.TranslationException;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.cache.FieldsCache;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.contentlet.model.IndexPolicy;
+import com.dotmarketing.portlets.structure.model.Structure;
+import com.dotmarketing.util.UUIDGenerator;
+import com.liferay.portal.model.User;
+import com.liferay.util.FileUtil;
+import io.vavr.Lazy;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes translated versions of a contentlet - binaries, tags, checkin, publish and unlock.  Used by the
+ * translation actionlet and by background translation jobs.
+ */
+public class TranslationPersister {
+
+    public static final Lazy<TranslationPersister> instance = Lazy.of(TranslationPersister::new);
+
+    /**
+     * Persists a single translated version, sharing the source binaries just for it
+     */
+    public Contentlet persist(final User user, final Contentlet sourceContentlet, final Contentlet translatedContent,
+            final boolean live) throws DotDataException, DotSecurityException, TranslationException {
+        try (SharedBinaries binaries = sharedBinaries(user)) {
+            return persist(user, sourceContentlet, translatedContent, live, binaries);
+        }
+    }
+
+    /**
+     * Binaries shared by all the versions persisted with it, close it once they are all persisted
+     */
+    SharedBinaries sharedBinaries(final User user) {
+        return new SharedBinaries(tmpBinaryFolder(user, "translation-" + UUIDGenerator.generateUuid()));
+    }
+
+    /**
+     * Checks in, publishes and unlocks one translated version.  Indexing is deferred to the reindex queue, which
+     * indexes all the versions written by this run together instead of waiting on the index for every checkin and
+     * publish.
+     */
+    Contentlet persist(final User user, final Contentlet sourceContentlet, final Contentlet translatedContent,
+            final boolean live, final SharedBinaries binaries)
+            throws DotDataException, DotSecurityException, TranslationException {
+        sourceContentlet.setTags();
+        copyBinariesAndTags(user, sourceContentlet, translatedContent, binaries);
+        translatedContent.setProperty(Contentlet.DISABLE_WORKFLOW, true);
+        translatedContent.setProperty(Contentlet.DONT_VALIDATE_ME, true);
+        translatedContent.setIndexPolicy(IndexPolicy.DEFER);
+        translatedContent.setIndexPolicyDependencies(IndexPolicy.DEFER);
+        final Contentlet persisted = APILocator.getContentletAPI().checkin(translatedContent, user, false);
+        persisted.setIndexPolicy(IndexPolicy.DEFER);
+        persisted.setIndexPolicyDependencies(IndexPolicy.DEFER);
+        if (live) {
+            APILocator.getContentletAPI().publish(persisted, user, false);
+        }
+        APILocator.getContentletAPI().unlock(persisted, user, false);
+        return persisted;
+    }
+
+    /**
+     * Gives the translated content the source's binaries and tags.  Binaries are shared through {@link SharedBinaries}
+     * rather than copied for every language.
+     */
+    void copyBinariesAndTags(final User user, final Contentlet sourceContentlet, final Contentlet translatedContent,
+            final SharedBinaries binaries) throws DotDataException, DotSecurityException, TranslationException {
+
+        final Structure structure = translatedContent.getStructure();
+        final List<com.dotmarketing.portlets.structure.model.Field> list = FieldsCache.getFieldsByStructureInode(
+                structure.getInode());
+
+        for (final com.dotmarketing.portlets.structure.model.Field field : list) {
+            if (com.dotmarketing.portlets.structure.model.Field.FieldType.BINARY.toString()
+                    .equals(field.getFieldType())) {
+
+                final java.io.File inputFile = APILocator
+                        .getContentletAPI()
+                        .getBinaryFile(sourceContentlet.getInode(), field.getVelocityVarName(), user);
+                if (inputFile != null) {
+
+                    // each translation gets its own folder so languages never overwrite each other's file
+                    final java.io.File acopyFolder = tmpBinaryFolder(user,
+                            field.getFieldContentlet() + java.io.File.separator + UUIDGenerator.generateUuid());
+
+                    final String shortFileName = FileUtil.getShortFileName(inputFile.getAbsolutePath());
+
+                    try {
+                        final java.io.File binaryFile = binaries.share(inputFile, acopyFolder, shortFileName.trim());
+                        translatedContent.setBinary(field.getVelocityVarName(), binaryFile);
+                    } catch (IOException e) {
+                        throw new TranslationException(e);
+                    }
+                }
+            } else if (field.getFieldType()
+                    .equals(com.dotmarketing.portlets.structure.model.Field.FieldType.TAG.toString())) {
+
+                translatedContent.setStringProperty(field.getVelocityVarName(),
+                        sourceContentlet.getStringProperty(field.getVelocityVarName()));
+            }
+        }
+    }
+
+    java.io.File tmpBinaryFolder(final User user, final String folder) {
+        return new java.io.File(APILocator.getFileAssetAPI().getRealAssetPathTmpBinary()
+                + java.io.File.separator + user.getUserId() + java.io.File.separator + folder);
+    }
+}
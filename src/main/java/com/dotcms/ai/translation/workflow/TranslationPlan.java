@@ -0,0 +1,57 @@
+package com.dotcms.ai.translation.workflow;
+
+import com.dotcms.contenttype.model.field.Field;
+import com.dotcms.contenttype.transform.field.LegacyFieldTransformer;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * What a translation action does for one content type - the target languages, the fields to translate and the
+ * glossary prefix - worked out once from the action's parameters and reused for every contentlet of that type.
+ * Plans are cached by action, content type and parameter values, and the content type's mod date is part of the key,
+ * so changing the action or the content type's fields compiles a new plan.  Plans also expire after ten minutes
+ * so `*` picks up newly added languages.
+ */
+class TranslationPlan {
+
+    private static final Cache<String, TranslationPlan> plans = Caffeine.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .maximumSize(500)
+            .build();
+
+    final List<Language> languages;
+    final List<Field> fields;
+    final List<com.dotmarketing.portlets.structure.model.Field> oldFields;
+    final List<String> fieldVars;
+    final Optional<String> translationKeyPrefix;
+    final boolean async;
+
+    TranslationPlan(List<Language> languages, List<Field> fields, Optional<String> translationKeyPrefix,
+            boolean async) {
+        this.languages = List.copyOf(languages);
+        this.fields = List.copyOf(fields);
+        this.oldFields = List.copyOf(new LegacyFieldTransformer(new ArrayList<>(fields)).asOldFieldList());
+        this.fieldVars = fields.stream().map(Field::variable).collect(Collectors.toUnmodifiableList());
+        this.translationKeyPrefix = translationKeyPrefix;
+        this.async = async;
+    }
+
+    /**
+     * The target languages other than the given source language
+     */
+    List<Language> languagesFrom(long sourceLanguageId) {
+        return languages.stream().filter(lang -> lang.getId() != sourceLanguageId).collect(Collectors.toList());
+    }
+
+    static TranslationPlan get(String key, Supplier<TranslationPlan> compiler) {
+        return plans.get(key, k -> compiler.get());
+    }
+
+}
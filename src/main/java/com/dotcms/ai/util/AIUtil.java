@@ -5,9 +5,11 @@ import com.dotcms.security.apps.AppSecrets;
 import com.dotcms.security.apps.Secret;
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
+import com.liferay.portal.model.User;
 import io.vavr.control.Try;
 import java.io.InputStream;
 import java.util.Map;
@@ -35,6 +37,63 @@ public class AIUtil {
         return secrets.get().getSecrets();
     }
 
+    public static String getStringSecret(String hostId, String key, String defaultValue) {
+        return Try.of(() -> getSecrets(hostId).get(key).getString().trim())
+                .filter(UtilMethods::isSet)
+                .getOrElse(defaultValue);
+    }
+
+    public static int getIntSecret(String hostId, String key, int defaultValue) {
+        return Try.of(() -> Integer.parseInt(getSecrets(hostId).get(key).getString().trim()))
+                .getOrElse(defaultValue);
+    }
+
+    public static long getLongSecret(String hostId, String key, long defaultValue) {
+        return Try.of(() -> Long.parseLong(getSecrets(hostId).get(key).getString().trim()))
+                .getOrElse(defaultValue);
+    }
+
+    public static boolean getBooleanSecret(String hostId, String key, boolean defaultValue) {
+        return Try.of(() -> Boolean.parseBoolean(getSecrets(hostId).get(key).getString().trim()))
+                .getOrElse(defaultValue);
+    }
+
+    /**
+     * A rough token count for sizing requests - about 4 characters per token for english text
+     * @param text
+     * @return
+     */
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Checks in the contentlet as a new working version without running workflow or validation, used when the AI
+     * has changed field values (e.g. alt text) after the content has already been saved
+     * @param contentlet
+     * @param user
+     * @return
+     */
+    public static Contentlet saveContentlet(Contentlet contentlet, User user) {
+
+        try {
+            contentlet.setProperty(Contentlet.WORKFLOW_IN_PROGRESS, Boolean.TRUE);
+            contentlet.setProperty(Contentlet.SKIP_RELATIONSHIPS_VALIDATION, Boolean.TRUE);
+            contentlet.setProperty(Contentlet.DONT_VALIDATE_ME, Boolean.TRUE);
+
+            final boolean isPublished = APILocator.getVersionableAPI().isLive(contentlet);
+            final Contentlet savedContent = APILocator.getContentletAPI().checkin(contentlet, user, false);
+            if (isPublished) {
+                savedContent.setProperty(Contentlet.WORKFLOW_IN_PROGRESS, Boolean.TRUE);
+                savedContent.setProperty(Contentlet.SKIP_RELATIONSHIPS_VALIDATION, Boolean.TRUE);
+                savedContent.setProperty(Contentlet.DONT_VALIDATE_ME, Boolean.TRUE);
+            }
+            return savedContent;
+        } catch (Exception e) {
+            throw new DotRuntimeException(e);
+        }
+    }
+
     private static final String PROPERTY_FILE_NAME = "plugin.properties";
     private static final Properties properties;
     static {
@@ -58,6 +117,10 @@ public class AIUtil {
         return getProperty(key, null);
     }
 
+    public static int getIntProperty(String key, int defaultValue) {
+        return Try.of(() -> Integer.parseInt(properties.getProperty(key).trim())).getOrElse(defaultValue);
+    }
+
     public static boolean getBooleanProperty(String key, boolean defaultValue) {
         return Try.of(()->Boolean.parseBoolean(properties.getProperty(key))).getOrElse(defaultValue);
 
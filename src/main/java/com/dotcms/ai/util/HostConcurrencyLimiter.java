@@ -0,0 +1,43 @@
+package com.dotcms.ai.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent AI calls per host.  The number of permits is read from the host's dotAI secrets
+ * (falling back to a default) and re-read five minutes after it was, so config changes are picked up without a
+ * restart.  Calls still running on the old semaphore release their permit to it, so for a short while after a
+ * re-read a host can have a few more calls in flight than configured.
+ */
+public class HostConcurrencyLimiter {
+
+    private final String permitsSecretKey;
+    private final int defaultPermits;
+
+    private final Cache<String, Semaphore> semaphores = Caffeine.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    public HostConcurrencyLimiter(String permitsSecretKey, int defaultPermits) {
+        this.permitsSecretKey = permitsSecretKey;
+        this.defaultPermits = defaultPermits;
+    }
+
+    public <T> T call(String hostId, Callable<T> callable) throws Exception {
+        final Semaphore semaphore = semaphores.get(hostId, k -> new Semaphore(permits(k), true));
+        semaphore.acquire();
+        try {
+            return callable.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    int permits(String hostId) {
+        return Math.max(1, AIUtil.getIntSecret(hostId, permitsSecretKey, defaultPermits));
+    }
+
+}
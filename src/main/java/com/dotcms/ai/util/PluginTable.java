@@ -0,0 +1,159 @@
+package com.dotcms.ai.util;
+
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.common.db.DotDatabaseMetaData;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.util.Logger;
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A table the plugin keeps its own data in.  The table is created the first time it is needed with the DDL for the
+ * database dotCMS runs on - use {@link #text()}, {@link #timestamp()} and {@link #bool()} for the column types that
+ * differ between Postgres and MSSQL.  If it cannot be created it is tried again a minute later rather than given up
+ * on until the plugin is reloaded.  Rows are written with {@link #upsert}, which only uses plain update and insert
+ * statements.  Creating the table and upserts should not run inside a caller's transaction: on Postgres a failed
+ * statement aborts the whole transaction, so a create or insert that loses a race would fail the caller's work too.
+ */
+public class PluginTable {
+
+    static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final String name;
+
+    private final Supplier<List<String>> ddl;
+
+    private volatile boolean ready = false;
+
+    private volatile long nextAttempt = 0;
+
+    /**
+     * @param name the table name
+     * @param ddl the statements that create the table and its indexes, run in order when the table does not exist
+     */
+    public PluginTable(String name, Supplier<List<String>> ddl) {
+        this.name = name;
+        this.ddl = ddl;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * true if the table is known to exist, without trying to create it
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * true if the table exists or was just created, false if it could not be created - in that case it is not
+     * tried again for a minute
+     */
+    public boolean ready() {
+        if (ready || System.currentTimeMillis() < nextAttempt) {
+            return ready;
+        }
+        synchronized (this) {
+            if (!ready && System.currentTimeMillis() >= nextAttempt) {
+                ready = Try.of(this::create)
+                        .onFailure(e -> Logger.warn(this.getClass(),
+                                "Unable to create " + name + ": " + e.getMessage()))
+                        .getOrElse(false);
+                nextAttempt = System.currentTimeMillis() + RETRY_MILLIS;
+            }
+        }
+        return ready;
+    }
+
+    private boolean create() throws Exception {
+        if (exists()) {
+            return true;
+        }
+        try {
+            for (String statement : ddl.get()) {
+                new DotConnect().executeStatement(statement);
+            }
+            Logger.info(this.getClass(), "Created table " + name);
+            return true;
+        } catch (Exception e) {
+            // another node may have created it at the same time
+            if (exists()) {
+                return true;
+            }
+            throw e;
+        }
+    }
+
+    private boolean exists() throws Exception {
+        return new DotDatabaseMetaData().tableExists(DbConnectionFactory.getConnection(), name);
+    }
+
+    /**
+     * Updates the row with the given key, or inserts it if there is none
+     * @param keyColumns the primary key columns
+     * @param keyValues their values
+     * @param columns the other columns
+     * @param values their values
+     */
+    public void upsert(List<String> keyColumns, List<Object> keyValues, List<String> columns, List<Object> values)
+            throws DotDataException {
+        final List<Object> updateParams = new ArrayList<>(values);
+        updateParams.addAll(keyValues);
+        final String update = "update " + name + " set " + String.join(" = ?, ", columns) + " = ? where "
+                + String.join(" = ? and ", keyColumns) + " = ?";
+        if (new DotConnect().executeUpdate(update, updateParams.toArray()) > 0) {
+            return;
+        }
+
+        final List<String> insertColumns = new ArrayList<>(keyColumns);
+        insertColumns.addAll(columns);
+        final List<Object> insertParams = new ArrayList<>(keyValues);
+        insertParams.addAll(values);
+        final String insert = "insert into " + name + " (" + String.join(", ", insertColumns) + ") values ("
+                + String.join(", ", Collections.nCopies(insertColumns.size(), "?")) + ")";
+        try {
+            new DotConnect().executeUpdate(insert, insertParams.toArray());
+        } catch (DotDataException e) {
+            // inserted by another thread or node since the update, the row is there now
+            if (new DotConnect().executeUpdate(update, updateParams.toArray()) == 0) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows whose date column is older than the given number of days
+     * @return the number of rows deleted
+     */
+    public int deleteOlderThan(String dateColumn, int days) throws DotDataException {
+        return new DotConnect().executeUpdate("delete from " + name + " where " + dateColumn + " < ?",
+                new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days)));
+    }
+
+    /**
+     * column type for unbounded text
+     */
+    public static String text() {
+        return DbConnectionFactory.isMsSql() ? "nvarchar(max)" : "text";
+    }
+
+    /**
+     * column type for a date and time - {@code timestamp} is a row version on MSSQL
+     */
+    public static String timestamp() {
+        return DbConnectionFactory.isMsSql() ? "datetime" : "timestamp";
+    }
+
+    public static String bool() {
+        return DbConnectionFactory.isMsSql() ? "bit" : "boolean";
+    }
+
+}
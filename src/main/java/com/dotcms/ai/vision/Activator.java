@@ -1,8 +1,21 @@
 package com.dotcms.ai.vision;
 
+import com.dotcms.ai.client.AIAuditLog;
+import com.dotcms.ai.client.AICompletionClient;
+import com.dotcms.ai.client.TokenBudget;
+import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.translation.TranslationMemory;
+import com.dotcms.ai.translation.job.TranslationJobAPI;
+import com.dotcms.ai.translation.job.TranslationJobResource;
+import com.dotcms.ai.translation.listener.GlossaryInvalidationListener;
+import com.dotcms.ai.translation.listener.PreTranslationListener;
+import com.dotcms.ai.translation.workflow.PreTranslator;
 import com.dotcms.ai.translation.workflow.OpenAITranslationActionlet;
+import com.dotcms.ai.vision.api.AltTextStore;
+import com.dotcms.ai.vision.api.AIVisionBulkProcessor;
 import com.dotcms.ai.vision.listener.OpenAIImageTaggingContentListener;
 import com.dotcms.ai.vision.workflow.OpenAIVisionAutoTagActionlet;
+import com.dotcms.rest.config.RestServiceUtil;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.osgi.GenericBundleActivator;
 import com.dotmarketing.portlets.workflows.actionlet.WorkFlowActionlet;
@@ -13,6 +26,10 @@ public class Activator extends GenericBundleActivator {
 
     private static final OpenAIImageTaggingContentListener LISTENER = new OpenAIImageTaggingContentListener();
 
+    private static final GlossaryInvalidationListener GLOSSARY_LISTENER = new GlossaryInvalidationListener();
+
+    private static final PreTranslationListener PRETRANSLATION_LISTENER = new PreTranslationListener();
+
 
     private final List<WorkFlowActionlet> actionlets = List.of(
             new OpenAIVisionAutoTagActionlet(),
@@ -28,6 +45,13 @@ public class Activator extends GenericBundleActivator {
         // Add the Embedding Listener (this does nothing right now)
         subscribeEmbeddingsListener();
 
+        // start the translation job workers, picking up any jobs queued before a restart
+        TranslationJobAPI.instance.get();
+        RestServiceUtil.addResource(TranslationJobResource.class);
+        RestServiceUtil.addResource(DotAIStatusResource.class);
+
+        // initialise clients, prompts, codecs, secrets and connections in the background before the first request
+        PluginWarmUp.instance.get().start();
 
     }
 
@@ -35,6 +59,38 @@ public class Activator extends GenericBundleActivator {
 
         unsubscribeEmbeddingsListener();
 
+        if (PluginWarmUp.instance.isEvaluated()) {
+            PluginWarmUp.instance.get().shutdown();
+        }
+        RestServiceUtil.removeResource(TranslationJobResource.class);
+        RestServiceUtil.removeResource(DotAIStatusResource.class);
+        if (TranslationJobAPI.instance.isEvaluated()) {
+            TranslationJobAPI.instance.get().shutdown();
+        }
+        if (PreTranslator.instance.isEvaluated()) {
+            PreTranslator.instance.get().shutdown();
+        }
+
+        if (AIVisionBulkProcessor.instance.isEvaluated()) {
+            AIVisionBulkProcessor.instance.get().shutdown();
+        }
+        if (AICompletionClient.instance.isEvaluated()) {
+            AICompletionClient.instance.get().shutdown();
+        }
+        OpenAITranslationService.shutdown();
+        if (TranslationMemory.instance.isEvaluated()) {
+            TranslationMemory.instance.get().shutdown();
+        }
+        if (AltTextStore.instance.isEvaluated()) {
+            AltTextStore.instance.get().shutdown();
+        }
+        if (TokenBudget.instance.isEvaluated()) {
+            TokenBudget.instance.get().shutdown();
+        }
+        if (AIAuditLog.instance.isEvaluated()) {
+            AIAuditLog.instance.get().shutdown();
+        }
+
         // unregistering the actionlets actually removes them and their config from the system
         //this.unregisterActionlets();
 
@@ -42,12 +98,16 @@ public class Activator extends GenericBundleActivator {
 
     private void unsubscribeEmbeddingsListener() {
         APILocator.getLocalSystemEventsAPI().unsubscribe(LISTENER);
+        APILocator.getLocalSystemEventsAPI().unsubscribe(GLOSSARY_LISTENER);
+        APILocator.getLocalSystemEventsAPI().unsubscribe(PRETRANSLATION_LISTENER);
     }
 
 
     private void subscribeEmbeddingsListener() {
 
         APILocator.getLocalSystemEventsAPI().subscribe(LISTENER);
+        APILocator.getLocalSystemEventsAPI().subscribe(GLOSSARY_LISTENER);
+        APILocator.getLocalSystemEventsAPI().subscribe(PRETRANSLATION_LISTENER);
 
     }
 
@@ -0,0 +1,54 @@
+package com.dotcms.ai.vision;
+
+import com.dotcms.ai.client.AICompletionClient;
+import com.dotcms.ai.translation.TranslationRouter;
+import com.dotcms.rest.ResponseEntityView;
+import com.dotcms.rest.WebResource;
+import com.dotcms.rest.annotation.NoCache;
+import com.liferay.portal.model.User;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * What the plugin counts about its own work, for monitoring.  Admins only.
+ * <pre>
+ * GET /api/v1/dotai/status
+ * </pre>
+ */
+@Path("/v1/dotai/status")
+public class DotAIStatusResource {
+
+    private final WebResource webResource = new WebResource();
+
+    @GET
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public final Response getStatus(@Context final HttpServletRequest request,
+            @Context final HttpServletResponse response) {
+
+        final User user = new WebResource.InitBuilder(webResource)
+                .requestAndResponse(request, response)
+                .requiredBackendUser(true)
+                .rejectWhenNoUser(true)
+                .init()
+                .getUser();
+        if (!user.isAdmin()) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        final Map<String, Object> status = new LinkedHashMap<>();
+        status.put("warmUp", Map.of("ready", PluginWarmUp.instance.get().isReady(),
+                "timings", PluginWarmUp.instance.get().getTimings()));
+        status.put("transport", AICompletionClient.instance.get().getTransportMetrics().orElse(Map.of()));
+        status.put("translationRoutes", TranslationRouter.instance.get().stats());
+        return Response.ok(new ResponseEntityView<>(status)).build();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.dotcms.ai.vision;
+
+import com.dotcms.ai.app.AppKeys;
+import com.dotcms.ai.client.AIAuditLog;
+import com.dotcms.ai.client.AICompletionClient;
+import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.vision.api.AIVisionAPI;
+import com.dotmarketing.beans.Host;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.util.Logger;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Does on bundle start what the first vision or translation call would otherwise pay for: creating the APIs and
+ * clients, loading the prompt templates and image codecs, resolving the dotAI secrets and opening the connection to
+ * the completions endpoint - once for the system host and once for every host with a dotAI config.  It runs on a
+ * background thread, {@link #isReady()} turns true when it is done (also when a step failed) and the time each step
+ * took is logged and kept in {@link #getTimings()}.
+ */
+public class PluginWarmUp {
+
+    /**
+     * set to false in the plugin.properties to skip the warm-up
+     */
+    public static final String AI_WARMUP_ENABLED = "AI_WARMUP_ENABLED";
+
+    public static final Lazy<PluginWarmUp> instance = Lazy.of(PluginWarmUp::new);
+
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private volatile boolean ready = false;
+
+    private volatile Thread thread;
+
+    /**
+     * Starts the warm-up in the background
+     */
+    public void start() {
+        if (!AIUtil.getBooleanProperty(AI_WARMUP_ENABLED, true)) {
+            ready = true;
+            return;
+        }
+        thread = new Thread(this::run, "dotai-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        final long start = System.currentTimeMillis();
+        try {
+            step("instances", () -> {
+                AICompletionClient.instance.get();
+                AIAuditLog.instance.get();
+                AIVisionAPI.instance.get();
+                OpenAITranslationService.INSTANCE.get();
+            });
+            for (String hostId : hostIds()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                step("secrets:" + hostId, () -> AIUtil.getSecrets(hostId));
+                step("vision:" + hostId, () -> AIVisionAPI.instance.get().warmUp(hostId));
+                step("translation:" + hostId, () -> OpenAITranslationService.INSTANCE.get().warmUp(hostId));
+                step("transport:" + hostId, () -> AICompletionClient.instance.get().warmUp(hostId));
+            }
+        } finally {
+            DbConnectionFactory.closeSilently();
+            ready = true;
+            Logger.info(this.getClass(), "dotAI warm-up done in " + (System.currentTimeMillis() - start) + "ms "
+                    + getTimings());
+        }
+    }
+
+    /**
+     * the system host and every host that has dotAI secrets
+     */
+    List<String> hostIds() {
+        final List<String> hostIds = new ArrayList<>();
+        hostIds.add(Host.SYSTEM_HOST);
+        Try.of(() -> APILocator.getAppsAPI().appKeysByHost().entrySet().stream()
+                        .filter(e -> e.getValue().stream().anyMatch(AppKeys.APP_KEY::equalsIgnoreCase))
+                        .map(Map.Entry::getKey)
+                        .filter(hostId -> !Host.SYSTEM_HOST.equalsIgnoreCase(hostId))
+                        .collect(Collectors.toList()))
+                .onFailure(e -> Logger.warn(this.getClass(), "Unable to list the hosts to warm up: " + e.getMessage()))
+                .forEach(hostIds::addAll);
+        return hostIds;
+    }
+
+    private void step(String name, Runnable step) {
+        final long start = System.currentTimeMillis();
+        Try.run(step::run).onFailure(e -> Logger.warnAndDebug(this.getClass(),
+                "Warm-up step " + name + " failed: " + e.getMessage(), e));
+        timings.put(name, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * true once the warm-up is done, or if it is turned off
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * how long each step took in ms, in the order they ran
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    public void shutdown() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+}
@@ -13,6 +13,7 @@ import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public interface AIVisionAPI {
@@ -25,6 +26,11 @@ public interface AIVisionAPI {
 
     static final String AI_VISION_PROMPT = "AI_VISION_PROMPT";
 
+    /**
+     * when true, alt text is read from the image in all languages at once and kept for the other language versions
+     */
+    static final String AI_VISION_MULTILINGUAL_ALT_TEXT = "AI_VISION_MULTILINGUAL_ALT_TEXT";
+
     static final String AI_VISION_ALT_FIELD_VAR = "dotAIDescriptionSrc";
 
     static final String AI_VISION_TAG_FIELD_VAR = "dotAITagSrc";
@@ -62,4 +68,33 @@ public interface AIVisionAPI {
      */
     Optional<Tuple2<String, List<String>>> readImageTagsAndDescription(Contentlet contentlet,
             Field binaryField);
+
+    /**
+     * Reads only the requested outputs from the image.  Outputs already known for the image are taken from the
+     * cache and the model is only asked for the rest, with a prompt and max_tokens sized for them.  Outputs the model
+     * did not return are missing from the result.
+     *
+     * @param imageFile
+     * @param outputs
+     * @return
+     */
+    Map<VisionOutput, Object> readImage(File imageFile, Set<VisionOutput> outputs);
+
+    /**
+     * Reads only the requested outputs from the image in the binary or image field of the contentlet
+     *
+     * @param contentlet
+     * @param binaryField
+     * @param outputs
+     * @return
+     */
+    Map<VisionOutput, Object> readImage(Contentlet contentlet, Field binaryField, Set<VisionOutput> outputs);
+
+    /**
+     * Resolves the host's vision config and loads the prompt template.  The first call also loads the image codecs
+     * by encoding a small image.
+     *
+     * @param hostId
+     */
+    void warmUp(String hostId);
 }
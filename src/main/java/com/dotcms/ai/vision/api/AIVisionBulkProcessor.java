@@ -0,0 +1,103 @@
+package com.dotcms.ai.vision.api;
+
+import com.dotcms.ai.client.AIPriority;
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.util.HostConcurrencyLimiter;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.util.Logger;
+import com.liferay.portal.model.User;
+import io.vavr.Lazy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans bulk auto-tag work out over a bounded thread pool.  Each host is additionally limited by
+ * {@link #AI_VISION_MAX_CONCURRENCY} concurrent vision calls so one site's bulk run does not blow through the
+ * provider's rate limits.
+ */
+public class AIVisionBulkProcessor {
+
+    public static final String AI_VISION_BULK_THREADS = "AI_VISION_BULK_THREADS";
+
+    public static final String AI_VISION_BULK_TIMEOUT_SECONDS = "AI_VISION_BULK_TIMEOUT_SECONDS";
+
+    public static final String AI_VISION_MAX_CONCURRENCY = "AI_VISION_MAX_CONCURRENCY";
+
+    public static final Lazy<AIVisionBulkProcessor> instance = Lazy.of(AIVisionBulkProcessor::new);
+
+    private final ExecutorService executor;
+
+    private final HostConcurrencyLimiter hostLimiter = new HostConcurrencyLimiter(AI_VISION_MAX_CONCURRENCY, 4);
+
+    private final AIVisionAPI aiVisionAPI = AIVisionAPI.instance.get();
+
+    AIVisionBulkProcessor() {
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(AIUtil.getIntProperty(AI_VISION_BULK_THREADS, 8), r -> {
+            Thread thread = new Thread(r, "dotai-vision-bulk-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tags and adds alt text to the working version of each identifier/language pair in parallel and blocks until
+     * all of them are done (or the bulk timeout is hit).  Returns the number of contentlets that were changed.
+     * @param identifierLangs list of {@code identifier:languageId} keys
+     * @param user
+     * @return
+     */
+    public int process(List<String> identifierLangs, User user) {
+
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (String identifierLang : identifierLangs) {
+            futures.add(CompletableFuture.supplyAsync(() -> processOne(identifierLang, user), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(AIUtil.getIntProperty(AI_VISION_BULK_TIMEOUT_SECONDS, 1800), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Logger.warn(this.getClass(), "Bulk auto-tag did not finish cleanly: " + e.getMessage());
+        }
+
+        return (int) futures.stream().filter(f -> f.isDone() && !f.isCompletedExceptionally() && f.join()).count();
+    }
+
+    boolean processOne(String identifierLang, User user) {
+        final String identifier = identifierLang.substring(0, identifierLang.lastIndexOf(':'));
+        final long languageId = Long.parseLong(identifierLang.substring(identifierLang.lastIndexOf(':') + 1));
+        try {
+            final Contentlet contentlet = APILocator.getContentletAPI()
+                    .findContentletByIdentifier(identifier, false, languageId, APILocator.systemUser(), false);
+            if (contentlet == null) {
+                return false;
+            }
+            return hostLimiter.call(contentlet.getHost(), () -> AIPriority.withPriority(AIPriority.BULK, () -> {
+                boolean tagged = aiVisionAPI.tagImageIfNeeded(contentlet);
+                boolean altText = aiVisionAPI.addAltTextIfNeeded(contentlet);
+                if (altText) {
+                    AIUtil.saveContentlet(contentlet, user);
+                }
+                return tagged || altText;
+            }));
+        } catch (Exception e) {
+            Logger.warnAndDebug(this.getClass(), "Error auto-tagging " + identifierLang + ": " + e.getMessage(), e);
+            return false;
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
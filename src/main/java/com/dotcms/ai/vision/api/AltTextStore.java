@@ -0,0 +1,154 @@
+package com.dotcms.ai.vision.api;
+
+import com.dotcms.ai.util.AIUtil;
+import com.dotcms.ai.util.PluginTable;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.util.Logger;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.vavr.CheckedRunnable;
+import io.vavr.Lazy;
+import io.vavr.control.Try;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the alt text of an image in every language it was written in by a multilingual vision call, so the other
+ * language versions of a contentlet can take their alt text from here when they are published instead of reading
+ * the image again.  Alt texts are keyed by the hash of the image and the language id and go to a bounded in memory
+ * cache and the {@link #TABLE} table.  Alt texts that have not been written or read from the table for
+ * {@link #AI_VISION_ALT_TEXT_RETENTION_DAYS} are deleted once a day.  Alt texts are read and written from the publish
+ * listener, inside its transaction - so the table is only created and written on the store's own thread, where a
+ * failed statement (e.g. two language versions of an image writing the same row) cannot abort the caller's
+ * transaction.
+ */
+public class AltTextStore {
+
+    /**
+     * how long an unused alt text is kept in the table, 0 keeps them forever
+     */
+    public static final String AI_VISION_ALT_TEXT_RETENTION_DAYS = "AI_VISION_ALT_TEXT_RETENTION_DAYS";
+
+    static final String TABLE = "dotai_alt_text";
+
+    public static final Lazy<AltTextStore> instance = Lazy.of(AltTextStore::new);
+
+    private final Cache<String, String> cache = Caffeine.newBuilder()
+            .maximumSize(5000)
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    private final PluginTable table = new PluginTable(TABLE, () -> List.of("create table " + TABLE
+            + " (image_hash varchar(64) not null, language_id bigint not null, alt_text " + PluginTable.text()
+            + " not null, mod_date " + PluginTable.timestamp() + ", primary key (image_hash, language_id))"));
+
+    /**
+     * creates the table, writes alt texts and deletes the unused ones
+     */
+    private final ScheduledExecutorService writer;
+
+    AltTextStore() {
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dotai-alt-text");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.execute(() -> write(() -> table.ready()));
+        this.writer.scheduleWithFixedDelay(this::deleteUnused, 15, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    Optional<String> get(String imageHash, long languageId) {
+        final String cached = cache.getIfPresent(imageHash + ":" + languageId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (!table.isReady()) {
+            return Optional.empty();
+        }
+        final Optional<String> stored = Try.of(() -> {
+            final List<Map<String, Object>> rows = new DotConnect()
+                    .setSQL("select alt_text, mod_date from " + TABLE + " where image_hash = ? and language_id = ?")
+                    .addParam(imageHash)
+                    .addParam(languageId)
+                    .loadObjectResults();
+            if (rows.isEmpty()) {
+                return null;
+            }
+            final Date modDate = (Date) rows.get(0).get("mod_date");
+            Try.run(() -> writer.execute(() -> write(() -> touch(imageHash, languageId, modDate))));
+            return (String) rows.get(0).get("alt_text");
+        }).onFailure(e -> Logger.warnAndDebug(this.getClass(), "Unable to read alt text: " + e.getMessage(), e))
+                .toJavaOptional();
+        stored.ifPresent(altText -> cache.put(imageHash + ":" + languageId, altText));
+        return stored;
+    }
+
+    /**
+     * Keeps the alt text in memory right away and queues the write to the table
+     */
+    void put(String imageHash, long languageId, String altText) {
+        cache.put(imageHash + ":" + languageId, altText);
+        Try.run(() -> writer.execute(() -> write(() -> {
+                    if (table.ready()) {
+                        table.upsert(List.of("image_hash", "language_id"), List.of(imageHash, languageId),
+                                List.of("alt_text", "mod_date"), List.of(altText, new Date()));
+                    }
+                })))
+                .onFailure(e -> Logger.debug(this.getClass(), "Not writing alt text: " + e.getMessage()));
+    }
+
+    private void write(CheckedRunnable write) {
+        try {
+            write.run();
+        } catch (Throwable e) {
+            Logger.warnAndDebug(this.getClass(), "Unable to write alt text: " + e.getMessage(), e);
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    /**
+     * Moves the mod_date of an alt text read from the table forward, at most once a day, so alt texts that are still
+     * used are not deleted as unused
+     */
+    void touch(String imageHash, long languageId, Date modDate) throws DotDataException {
+        if (modDate != null && modDate.getTime() > System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)) {
+            return;
+        }
+        new DotConnect().executeUpdate("update " + TABLE
+                + " set mod_date = ? where image_hash = ? and language_id = ?", new Date(), imageHash, languageId);
+    }
+
+    void deleteUnused() {
+        final int days = AIUtil.getIntProperty(AI_VISION_ALT_TEXT_RETENTION_DAYS, 180);
+        if (days <= 0) {
+            return;
+        }
+        try {
+            if (!table.ready()) {
+                return;
+            }
+            final int deleted = table.deleteOlderThan("mod_date", days);
+            Logger.info(this.getClass(), "Deleted " + deleted + " alt texts unused for " + days + " days");
+        } catch (Throwable e) {
+            Logger.warnAndDebug(this.getClass(), "Unable to clean up alt texts: " + e.getMessage(), e);
+        } finally {
+            DbConnectionFactory.closeSilently();
+        }
+    }
+
+    /**
+     * Stops the cleanup, alt texts still queued are written
+     */
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+}
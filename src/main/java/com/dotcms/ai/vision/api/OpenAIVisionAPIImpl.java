@@ -1,6 +1,8 @@
 package com.dotcms.ai.vision.api;
 
 import com.dotcms.ai.app.AppKeys;
+import com.dotcms.ai.client.AICompletionClient;
+import com.dotcms.ai.client.AIOperation;
 import com.dotcms.ai.util.AIUtil;
 import com.dotcms.ai.util.VelocityContextFactory;
 import com.dotcms.ai.vision.listener.OpenAIImageTaggingContentListener;
@@ -18,25 +20,33 @@ import com.dotmarketing.portlets.contentlet.business.exporter.ImageFilterExporte
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.portlets.fileassets.business.FileAssetAPI;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.json.JSONObject;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.vavr.Lazy;
 import io.vavr.Tuple;
 import io.vavr.Tuple2;
 import io.vavr.control.Try;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.imageio.ImageIO;
 import org.apache.velocity.context.Context;
 
 public class OpenAIVisionAPIImpl implements AIVisionAPI {
@@ -48,11 +58,38 @@ public class OpenAIVisionAPIImpl implements AIVisionAPI {
 
     static final ImageFilterExporter IMAGE_FILTER_EXPORTER = new ImageFilterExporter();
 
-    static final Cache<String, Tuple2<String, List<String>>> promptCache = Caffeine.newBuilder()
-            .expireAfterWrite(1, TimeUnit.MINUTES)
-            .maximumSize(100)
+    /**
+     * each output of an image is cached on its own so a call only asks for what is not known yet
+     */
+    static final Cache<String, Object> outputCache = Caffeine.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .maximumSize(5000)
             .build();
 
+    /**
+     * the default prompt template, read from the bundle once
+     */
+    static final Lazy<String> defaultPrompt = Lazy.of(() -> Try.of(() -> {
+        try (InputStream in = OpenAIVisionAPIImpl.class.getResourceAsStream("/default-vision-prompt.json")) {
+            return new String(in.readAllBytes());
+        }
+    }).getOrNull());
+
+    /**
+     * resizes and encodes a small image once, which loads the image codecs the first real image would wait for
+     */
+    private final Lazy<Boolean> imageCodecsReady = Lazy.of(() -> Try.of(() -> {
+        final File image = File.createTempFile("dotai-warmup", ".png");
+        try {
+            ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "png", image);
+            base64EncodeImage(image);
+            return true;
+        } finally {
+            image.delete();
+        }
+    }).onFailure(e -> Logger.debug(this.getClass(), "Unable to warm up image codecs: " + e.getMessage()))
+            .getOrElse(false));
+
     final Map<String, String[]> imageResizeParameters = Map.of(
             "resize_maxw", new String[]{"500"},
             "resize_maxh", new String[]{"500"},
@@ -129,13 +166,14 @@ public class OpenAIVisionAPIImpl implements AIVisionAPI {
             return false;
         }
 
-        Optional<Tuple2<String, List<String>>> altAndTags = readImageTagsAndDescription(contentlet, binaryField);
-
-        if (altAndTags.isEmpty()) {
+        final Set<VisionOutput> outputs = neededOutputs(contentlet, binaryField);
+        outputs.add(VisionOutput.TAGS);
+        final List<String> tags = VisionOutput.TAGS.values(readImage(contentlet, binaryField, outputs));
+        if (tags.isEmpty()) {
             return false;
         }
 
-        saveTags(contentlet, altAndTags.get()._2);
+        saveTags(contentlet, tags);
         return true;
 
     }
@@ -165,25 +203,106 @@ public class OpenAIVisionAPIImpl implements AIVisionAPI {
 
     public boolean addAltTextIfNeeded(Contentlet contentlet, Field binaryField, Field altTextField) {
 
-        Optional<Tuple2<String, List<String>>> altAndTags = readImageTagsAndDescription(contentlet, binaryField);
+        if (!shouldProcessAltText(contentlet, binaryField, altTextField)) {
+            return false;
+        }
 
-        if (altAndTags.isEmpty()) {
+        final Set<VisionOutput> outputs = neededOutputs(contentlet, binaryField);
+        final Optional<String> altText;
+        if (isMultilingualAltText(contentlet.getHost())) {
+            // another language version may already have read the image for this one
+            final Optional<String> imageHash = getFileToProcess(contentlet, binaryField).flatMap(this::getSha256);
+            final Optional<String> stored = imageHash.flatMap(
+                    hash -> AltTextStore.instance.get().get(hash, contentlet.getLanguageId()));
+            if (stored.isPresent()) {
+                altText = stored;
+            } else {
+                outputs.add(VisionOutput.ALT_TEXT_BY_LANGUAGE);
+                altText = Optional.ofNullable(VisionOutput.ALT_TEXT_BY_LANGUAGE
+                                .entries(readImage(contentlet, binaryField, outputs))
+                                .get(String.valueOf(contentlet.getLanguageId())))
+                        .or(() -> {
+                            // the answer was cut off or left this language out, read it on its own
+                            Logger.debug(this.getClass(), () -> "No multilingual alt text for language "
+                                    + contentlet.getLanguageId() + ", reading the alt text on its own");
+                            return VisionOutput.ALT_TEXT.text(readImage(contentlet, binaryField,
+                                    EnumSet.of(VisionOutput.ALT_TEXT)));
+                        });
+            }
+        } else {
+            outputs.add(VisionOutput.ALT_TEXT);
+            altText = VisionOutput.ALT_TEXT.text(readImage(contentlet, binaryField, outputs));
+        }
+        if (altText.isEmpty()) {
             return false;
         }
 
-        Optional<Contentlet> contentToSave = setAltText(contentlet, altTextField, altAndTags.get()._1);
+        Optional<Contentlet> contentToSave = setAltText(contentlet, altTextField, altText.get());
         return contentToSave.isPresent();
     }
 
+    /**
+     * Everything the contentlet still needs from the image, so tagging and alt text share one vision call and the
+     * second of them is served from the cache
+     */
+    Set<VisionOutput> neededOutputs(Contentlet contentlet, Field binaryField) {
+        final Set<VisionOutput> outputs = EnumSet.noneOf(VisionOutput.class);
+        final boolean tagsFromThisImage = contentlet.getContentType().fields().stream()
+                .filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_TAG_FIELD_VAR))
+                .anyMatch(f -> f.fieldVariablesMap().get(AIVisionAPI.AI_VISION_TAG_FIELD_VAR).value()
+                        .equalsIgnoreCase(binaryField.variable()));
+        if (tagsFromThisImage && shouldProcessTags(contentlet, binaryField)) {
+            outputs.add(VisionOutput.TAGS);
+        }
+        contentlet.getContentType().fields().stream()
+                .filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_ALT_FIELD_VAR))
+                .filter(f -> f.fieldVariablesMap().get(AIVisionAPI.AI_VISION_ALT_FIELD_VAR).value()
+                        .equalsIgnoreCase(binaryField.variable()))
+                .filter(f -> UtilMethods.isEmpty(() -> contentlet.getStringProperty(f.variable())))
+                .findFirst()
+                .ifPresent(f -> outputs.add(isMultilingualAltText(contentlet.getHost())
+                        ? VisionOutput.ALT_TEXT_BY_LANGUAGE
+                        : VisionOutput.ALT_TEXT));
+        return outputs;
+    }
+
+    boolean isMultilingualAltText(String hostId) {
+        return AIUtil.getBooleanSecret(hostId, AI_VISION_MULTILINGUAL_ALT_TEXT, false);
+    }
+
+    /**
+     * The languages alt text is written in by {@link VisionOutput#ALT_TEXT_BY_LANGUAGE}, keyed by language id
+     */
+    Map<Long, String> altTextLanguages() {
+        return Try.of(() -> APILocator.getLanguageAPI().getLanguages().stream()
+                        .collect(Collectors.toMap(Language::getId, l -> l.getLanguage()
+                                        + (UtilMethods.isSet(l.getCountry()) ? " (" + l.getCountry() + ")" : ""),
+                                (a, b) -> a, TreeMap::new)))
+                .getOrElse(Map.of());
+    }
+
+    private String instruction(VisionOutput output) {
+        if (output != VisionOutput.ALT_TEXT_BY_LANGUAGE) {
+            return output.instruction;
+        }
+        return String.format(output.instruction, altTextLanguages().entrySet().stream()
+                .map(e -> e.getKey() + " = " + e.getValue()).collect(Collectors.joining(", ")));
+    }
+
 
     private Optional<String> getSha256(File imageFile) {
         try {
             var md = MessageDigest.getInstance("SHA-256");
             try (var in = new DigestInputStream(Files.newInputStream(imageFile.toPath()), md)) {
-                while (in.read() != -1) {
+                final byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
                 }
             }
-            return Optional.of(new String(md.digest()));
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : md.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return Optional.of(hex.toString());
         } catch (Exception e) {
             return Optional.empty();
         }
@@ -191,82 +310,104 @@ public class OpenAIVisionAPIImpl implements AIVisionAPI {
 
     @Override
     public Optional<Tuple2<String, List<String>>> readImageTagsAndDescription(File imageFile) {
-
-        String parsedPrompt = Try.of(() -> {
-            final Context ctx = VelocityContextFactory.getMockContext();
-            ctx.put("visionModel", getAiVisionModel(Host.SYSTEM_HOST));
-            ctx.put("maxTokens", getAiVisionMaxTokens(Host.SYSTEM_HOST));
-            ctx.put("base64Image", base64EncodeImage(imageFile));
-            return VelocityUtil.eval(getAiVisionPrompt(Host.SYSTEM_HOST), ctx);
-        }).getOrNull();
-        if (parsedPrompt == null) {
-            return Optional.empty();
-        }
-
-        return readImageTagsAndDescription(parsedPrompt);
+        return altTextAndTags(readImage(imageFile, EnumSet.of(VisionOutput.ALT_TEXT, VisionOutput.TAGS)));
     }
 
+    @Override
+    public Optional<Tuple2<String, List<String>>> readImageTagsAndDescription(Contentlet contentlet,
+            Field imageOrBinaryField) {
+        return altTextAndTags(
+                readImage(contentlet, imageOrBinaryField, EnumSet.of(VisionOutput.ALT_TEXT, VisionOutput.TAGS)));
+    }
 
-    private Optional<Tuple2<String, List<String>>> readImageTagsAndDescription(String parsedPrompt) {
-
-        String promptHash = Try.of(
-                () -> MessageDigest.getInstance("SHA-256").digest(parsedPrompt.getBytes()).toString()).getOrNull();
-        if (UtilMethods.isEmpty(promptHash) || UtilMethods.isEmpty(parsedPrompt)) {
+    private Optional<Tuple2<String, List<String>>> altTextAndTags(Map<VisionOutput, Object> outputs) {
+        if (!outputs.containsKey(VisionOutput.ALT_TEXT) || !outputs.containsKey(VisionOutput.TAGS)) {
             return Optional.empty();
         }
-        return Optional.ofNullable(promptCache.get(promptHash, k -> {
-            try {
-                JSONObject parsedPromptJson = new JSONObject(parsedPrompt);
-                Logger.debug(this.getClass(), "parsedPromptJson: " + parsedPromptJson.toString());
-
-                final JSONObject openAIResponse = APILocator.getDotAIAPI()
-                        .getCompletionsAPI()
-                        .raw(parsedPromptJson, APILocator.systemUser().getUserId());
-
-                Logger.debug(OpenAIImageTaggingContentListener.class.getName(),
-                        "OpenAI Response: " + openAIResponse.toString());
-
-                final JSONObject parsedResponse = parseAIResponse(openAIResponse);
-                Logger.debug(OpenAIImageTaggingContentListener.class.getName(),
-                        "parsedResponse: " + parsedResponse.toString());
-
-                return Tuple.of(parsedResponse.getString(AI_VISION_ALT_TEXT_VARIABLE),
-                        parsedResponse.getJSONArray(AI_VISION_TAG_FIELD));
-            } catch (Exception e) {
-                Logger.warnAndDebug(OpenAIImageTaggingContentListener.class.getCanonicalName(), e.getMessage(), e);
-                return null;
-            }
-
-        }));
-
-
+        return Optional.of(Tuple.of(VisionOutput.ALT_TEXT.text(outputs).get(), VisionOutput.TAGS.values(outputs)));
     }
 
     @Override
-    public Optional<Tuple2<String, List<String>>> readImageTagsAndDescription(Contentlet contentlet,
-            Field imageOrBinaryField) {
-
-
-
+    public Map<VisionOutput, Object> readImage(File imageFile, Set<VisionOutput> outputs) {
+        return readImage(imageFile, outputs, Host.SYSTEM_HOST, VelocityContextFactory.getMockContext());
+    }
 
+    @Override
+    public Map<VisionOutput, Object> readImage(Contentlet contentlet, Field imageOrBinaryField,
+            Set<VisionOutput> outputs) {
         Optional<File> fileToProcess = getFileToProcess(contentlet, imageOrBinaryField);
-        if (fileToProcess.isEmpty()) {
-            return Optional.empty();
+        if (fileToProcess.isEmpty() || outputs.isEmpty()) {
+            return Map.of();
         }
+        return readImage(fileToProcess.get(), outputs, contentlet.getHost(),
+                VelocityContextFactory.getMockContext(contentlet, APILocator.systemUser()));
+    }
 
-        final Context ctx = VelocityContextFactory.getMockContext(contentlet, APILocator.systemUser());
-        ctx.put("visionModel", getAiVisionModel(contentlet.getHost()));
-        ctx.put("maxTokens", getAiVisionMaxTokens(contentlet.getHost()));
-        ctx.put("base64Image", base64EncodeImage(fileToProcess.get()));
-
-        final String prompt = Try.of(() -> VelocityUtil.eval(getAiVisionPrompt(contentlet.getHost()), ctx))
-                .onFailure(e -> Logger.warnAndDebug(OpenAIVisionAPIImpl.class, e)).getOrNull();
-        if (prompt == null) {
-            return Optional.empty();
+    /**
+     * Takes what it can from the cache and asks the model only for the rest.  Every output the model answers with
+     * is cached, also the ones that were not requested, e.g. when a custom prompt always returns alt text and tags.
+     */
+    private Map<VisionOutput, Object> readImage(File imageFile, Set<VisionOutput> outputs, String hostId,
+            Context ctx) {
+
+        final Map<VisionOutput, Object> result = new EnumMap<>(VisionOutput.class);
+        final String model = getAiVisionModel(hostId);
+        final Optional<String> imageHash = getSha256(imageFile);
+        final String cacheKey = imageHash.map(hash -> hash + ":" + hostId + ":" + model + ":").orElse(null);
+        final Set<VisionOutput> missing = EnumSet.noneOf(VisionOutput.class);
+        for (VisionOutput output : outputs) {
+            final Object cached = cacheKey == null ? null : outputCache.getIfPresent(cacheKey + output.property);
+            if (cached != null) {
+                result.put(output, cached);
+            } else {
+                missing.add(output);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
         }
 
-        return readImageTagsAndDescription(prompt);
+        final String prompt = Try.of(() -> {
+            ctx.put("visionModel", model);
+            ctx.put("maxTokens", getAiVisionMaxTokens(hostId, missing));
+            ctx.put("properties", missing.stream().map(o -> "`" + o.property + "`")
+                    .collect(Collectors.joining(", ")));
+            ctx.put("instructions", missing.stream().map(this::instruction).collect(Collectors.joining("; ")));
+            ctx.put("base64Image", base64EncodeImage(imageFile));
+            return VelocityUtil.eval(getAiVisionPrompt(hostId), ctx);
+        }).onFailure(e -> Logger.warnAndDebug(OpenAIVisionAPIImpl.class, e)).getOrNull();
+        if (UtilMethods.isEmpty(prompt)) {
+            return result;
+        }
 
+        try {
+            JSONObject parsedPromptJson = new JSONObject(prompt);
+            Logger.debug(this.getClass(), () -> "Reading " + missing + " with max_tokens "
+                    + parsedPromptJson.optString("max_tokens"));
+
+            final JSONObject openAIResponse = AICompletionClient.instance.get()
+                    .raw(parsedPromptJson, hostId, AIOperation.VISION);
+
+            final JSONObject parsedResponse = parseAIResponse(openAIResponse);
+            Logger.debug(this.getClass(), () -> "Read " + parsedResponse.length() + " outputs from image");
+
+            for (VisionOutput output : VisionOutput.values()) {
+                output.read(parsedResponse).ifPresent(value -> {
+                    if (cacheKey != null) {
+                        outputCache.put(cacheKey + output.property, value);
+                    }
+                    if (outputs.contains(output)) {
+                        result.put(output, value);
+                    }
+                    if (output == VisionOutput.ALT_TEXT_BY_LANGUAGE && imageHash.isPresent()) {
+                        storeAltTexts(imageHash.get(), output.entries(Map.of(output, value)));
+                    }
+                });
+            }
+        } catch (Exception e) {
+            Logger.warnAndDebug(OpenAIImageTaggingContentListener.class.getCanonicalName(), e.getMessage(), e);
+        }
+        return result;
     }
 
 
@@ -345,17 +486,54 @@ public class OpenAIVisionAPIImpl implements AIVisionAPI {
         return "500";
     }
 
+    /**
+     * max_tokens for the requested outputs, capped by AI_VISION_MAX_TOKENS.  The per language share of
+     * {@link VisionOutput#ALT_TEXT_BY_LANGUAGE} raises the cap, otherwise the answer is cut off on sites with more
+     * than a handful of languages
+     */
+    int getAiVisionMaxTokens(String hostId, Set<VisionOutput> outputs) {
+        final int configured = Try.of(() -> Integer.parseInt(getAiVisionMaxTokens(hostId).trim())).getOrElse(500);
+        final int byLanguage = outputs.contains(VisionOutput.ALT_TEXT_BY_LANGUAGE)
+                ? VisionOutput.ALT_TEXT_BY_LANGUAGE.maxTokens * Math.max(1, altTextLanguages().size())
+                : 0;
+        return Math.min(configured + byLanguage, 20 + byLanguage + outputs.stream()
+                .filter(o -> o != VisionOutput.ALT_TEXT_BY_LANGUAGE)
+                .mapToInt(o -> o.maxTokens)
+                .sum());
+    }
+
+    /**
+     * Keeps the alt text of each language so the other language versions can take it when they are published
+     */
+    private void storeAltTexts(String imageHash, Map<String, String> altTexts) {
+        altTexts.forEach((languageId, altText) -> {
+            if (UtilMethods.isSet(altText)) {
+                Try.run(() -> AltTextStore.instance.get().put(imageHash, Long.parseLong(languageId.trim()), altText))
+                        .onFailure(e -> Logger.debug(this.getClass(), "Ignoring alt text for language '"
+                                + languageId + "': " + e.getMessage()));
+            }
+        });
+    }
+
     String getAiVisionPrompt(String hostId) {
         if (UtilMethods.isSet(() -> AIUtil.getSecrets(hostId).get(AI_VISION_PROMPT).getString())) {
             return AIUtil.getSecrets(hostId).get(AI_VISION_PROMPT).getString();
         }
 
 
-        return Try.of(()->{
-            try (InputStream in = OpenAIVisionAPIImpl.class.getResourceAsStream("/default-vision-prompt.json")) {
-                return new String(in.readAllBytes());
-            }
-        }).getOrNull();
+        return defaultPrompt.get();
+    }
+
+    @Override
+    public void warmUp(String hostId) {
+        imageCodecsReady.get();
+        getAiVisionModel(hostId);
+        getAiVisionMaxTokens(hostId);
+        getAiVisionPrompt(hostId);
+        if (isMultilingualAltText(hostId)) {
+            altTextLanguages();
+            AltTextStore.instance.get().get("", 0);
+        }
     }
 
 
@@ -0,0 +1,106 @@
+package com.dotcms.ai.vision.api;
+
+import com.dotmarketing.util.json.JSONArray;
+import com.dotmarketing.util.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The things a vision call can be asked to read from an image.  Each output is its own property in the model's json
+ * answer, brings its own instruction into the prompt and its own share of max_tokens, so a call only asks for - and
+ * pays for - the outputs that are actually needed.
+ */
+public enum VisionOutput {
+
+    ALT_TEXT("altText", "`altText`: alt text that describes the image for screen readers, at most 125 characters",
+            80, Kind.TEXT),
+    TAGS("tags", "`tags`: an array of keywords that describe the image", 100, Kind.LIST),
+    CAPTION("caption", "`caption`: a one sentence caption for the image", 80, Kind.TEXT),
+    DOMINANT_COLORS("dominantColors", "`dominantColors`: an array of the up to 5 dominant colors of the image as hex "
+            + "codes", 60, Kind.LIST),
+    /**
+     * the alt text written in each of the languages, the instruction and max_tokens are per language
+     */
+    ALT_TEXT_BY_LANGUAGE("altTextByLanguage", "`altTextByLanguage`: an object with alt text that describes the image "
+            + "for screen readers, at most 125 characters, written in each of these languages and keyed by the number "
+            + "in front of the language: %s", 80, Kind.MAP);
+
+    enum Kind {
+        TEXT,
+        LIST,
+        MAP
+    }
+
+    /**
+     * the property of the json answer that holds this output
+     */
+    public final String property;
+    final String instruction;
+    final int maxTokens;
+    final Kind kind;
+
+    VisionOutput(String property, String instruction, int maxTokens, Kind kind) {
+        this.property = property;
+        this.instruction = instruction;
+        this.maxTokens = maxTokens;
+        this.kind = kind;
+    }
+
+    /**
+     * Reads this output from the parsed answer, empty if the model did not return it
+     */
+    Optional<Object> read(JSONObject answer) {
+        if (!answer.has(property) || answer.isNull(property)) {
+            return Optional.empty();
+        }
+        if (kind == Kind.TEXT) {
+            return Optional.of(answer.getString(property));
+        }
+        if (kind == Kind.MAP) {
+            final JSONObject values = answer.getJSONObject(property);
+            final Map<String, String> result = new LinkedHashMap<>();
+            final Iterator<?> keys = values.keys();
+            while (keys.hasNext()) {
+                final String key = String.valueOf(keys.next());
+                result.put(key, values.getString(key));
+            }
+            return Optional.of(result);
+        }
+        final JSONArray values = answer.getJSONArray(property);
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < values.length(); i++) {
+            result.add(values.getString(i));
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * The text of this output in the result of {@link AIVisionAPI#readImage}
+     */
+    public Optional<String> text(Map<VisionOutput, Object> result) {
+        return Optional.ofNullable(result.get(this)).map(String::valueOf);
+    }
+
+    /**
+     * The values of a list output in the result of {@link AIVisionAPI#readImage}
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> values(Map<VisionOutput, Object> result) {
+        final Object value = result.get(this);
+        return value instanceof List ? (List<String>) value : List.of();
+    }
+
+    /**
+     * The entries of a map output in the result of {@link AIVisionAPI#readImage}
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> entries(Map<VisionOutput, Object> result) {
+        final Object value = result.get(this);
+        return value instanceof Map ? (Map<String, String>) value : Map.of();
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.dotcms.ai.vision.listener;
 
 import com.dotcms.ai.app.AppKeys;
+import com.dotcms.ai.client.AIPriority;
+import com.dotcms.ai.util.AIUtil;
 import com.dotcms.ai.vision.api.AIVisionAPI;
 import com.dotcms.content.elasticsearch.business.event.ContentletArchiveEvent;
 import com.dotcms.content.elasticsearch.business.event.ContentletDeletedEvent;
@@ -11,12 +13,10 @@ import com.dotcms.system.event.local.model.Subscriber;
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.db.LocalTransaction;
-import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.contentlet.model.ContentletListener;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
-import com.liferay.portal.model.User;
 import io.vavr.control.Try;
 import java.util.Arrays;
 import java.util.List;
@@ -73,12 +73,15 @@ public class OpenAIImageTaggingContentListener implements ContentletListener<Con
 
         if (contentletPublishEvent.isPublish()) {
             try {
-                LocalTransaction.wrap(() -> aiVisionAPI.tagImageIfNeeded(contentlet));
-
-                LocalTransaction.wrap(() -> {
-                   if(aiVisionAPI.addAltTextIfNeeded(contentlet)) {
-                       saveContentlet(contentlet, APILocator.systemUser());
-                   }
+                AIPriority.withPriority(AIPriority.PUBLISH, () -> {
+                    LocalTransaction.wrap(() -> aiVisionAPI.tagImageIfNeeded(contentlet));
+
+                    LocalTransaction.wrap(() -> {
+                       if(aiVisionAPI.addAltTextIfNeeded(contentlet)) {
+                           AIUtil.saveContentlet(contentlet, APILocator.systemUser());
+                       }
+                    });
+                    return null;
                 });
 
             } catch (Exception e) {
@@ -96,26 +99,6 @@ public class OpenAIImageTaggingContentListener implements ContentletListener<Con
 
 
 
-    private Contentlet saveContentlet(Contentlet contentlet, User user) {
-
-        try {
-            contentlet.setProperty(Contentlet.WORKFLOW_IN_PROGRESS, Boolean.TRUE);
-            contentlet.setProperty(Contentlet.SKIP_RELATIONSHIPS_VALIDATION, Boolean.TRUE);
-            contentlet.setProperty(Contentlet.DONT_VALIDATE_ME, Boolean.TRUE);
-
-            final boolean isPublished = APILocator.getVersionableAPI().isLive(contentlet);
-            final Contentlet savedContent = APILocator.getContentletAPI().checkin(contentlet, user, false);
-            if (isPublished) {
-                savedContent.setProperty(Contentlet.WORKFLOW_IN_PROGRESS, Boolean.TRUE);
-                savedContent.setProperty(Contentlet.SKIP_RELATIONSHIPS_VALIDATION, Boolean.TRUE);
-                savedContent.setProperty(Contentlet.DONT_VALIDATE_ME, Boolean.TRUE);
-            }
-            return savedContent;
-        } catch (Exception e) {
-            throw new DotRuntimeException(e);
-        }
-    }
-
     void logEvent(String eventType, Contentlet contentlet) {
         //System.out.println(  "GOT " + eventType + " for content: " + contentlet.getTitle() + " id:" + contentlet.getIdentifier());
         Logger.info(OpenAIImageTaggingContentListener.class,
@@ -1,8 +1,11 @@
 package com.dotcms.ai.vision.workflow;
 
 import com.dotcms.ai.vision.api.AIVisionAPI;
+import com.dotcms.ai.vision.api.AIVisionBulkProcessor;
 import com.dotcms.contenttype.model.field.Field;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.workflows.actionlet.BatchAction;
 import com.dotmarketing.portlets.workflows.actionlet.PublishContentActionlet;
 import com.dotmarketing.portlets.workflows.actionlet.SaveContentActionlet;
 import com.dotmarketing.portlets.workflows.actionlet.WorkFlowActionlet;
@@ -11,13 +14,23 @@ import com.dotmarketing.portlets.workflows.model.WorkflowActionClassParameter;
 import com.dotmarketing.portlets.workflows.model.WorkflowActionFailureException;
 import com.dotmarketing.portlets.workflows.model.WorkflowActionletParameter;
 import com.dotmarketing.portlets.workflows.model.WorkflowProcessor;
+import com.dotmarketing.util.Logger;
+import com.liferay.portal.model.User;
 import io.vavr.control.Try;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class OpenAIVisionAutoTagActionlet extends WorkFlowActionlet {
+/**
+ * When run on a single contentlet this tags inline.  When run as a bulk action, each contentlet is only collected in
+ * {@link #preBatchAction} and the vision calls are fanned out in parallel in {@link #executeBatchAction}, which
+ * dotCMS runs once the per-contentlet steps are done and before the publish batch.
+ */
+public class OpenAIVisionAutoTagActionlet extends WorkFlowActionlet implements BatchAction<String> {
 
     private static final long serialVersionUID = 1L;
     AIVisionAPI aiVisionAPI = AIVisionAPI.instance.get();
@@ -42,15 +55,56 @@ public class OpenAIVisionAutoTagActionlet extends WorkFlowActionlet {
     public void executeAction(WorkflowProcessor processor, Map<String, WorkflowActionClassParameter> params)
             throws WorkflowActionFailureException {
 
+        if (shouldProcess(processor)) {
+            aiVisionAPI.tagImageIfNeeded(processor.getContentlet());
+            aiVisionAPI.addAltTextIfNeeded(processor.getContentlet());
+        }
 
-        Optional<Field> altField = processor.getContentlet().getContentType().fields().stream().filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_ALT_FIELD_VAR)).findFirst();
-        Optional<Field> tagField = processor.getContentlet().getContentType().fields().stream().filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_TAG_FIELD_VAR)).findFirst();
-        if(altField.isEmpty() && tagField.isEmpty()){
+    }
+
+    @Override
+    public void preBatchAction(WorkflowProcessor processor, WorkflowActionClass actionClass,
+            Map<String, WorkflowActionClassParameter> params) {
+
+        if (!shouldProcess(processor)) {
             return;
         }
+        final Contentlet contentlet = processor.getContentlet();
+        getObjectsForBatch(processor.getContextMap(), actionClass)
+                .add(contentlet.getIdentifier() + ":" + contentlet.getLanguageId());
+    }
 
+    @Override
+    public void executeBatchAction(User user, ConcurrentMap<String, Object> context,
+            WorkflowActionClass workflowActionClass, Map<String, WorkflowActionClassParameter> params) {
 
-        String myType = processor.getContentlet().getContentType().variable().toLowerCase();
+        final List<String> identifierLangs = new ArrayList<>(getObjectsForBatch(context, workflowActionClass));
+        if (identifierLangs.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final int changed = AIVisionBulkProcessor.instance.get().process(identifierLangs, user);
+        Logger.info(this.getClass(), "Bulk auto-tagged " + changed + "/" + identifierLangs.size() + " contentlets in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<String> getObjectsForBatch(ConcurrentMap<String, Object> context,
+            WorkflowActionClass workflowActionClass) {
+        return (List<String>) context.computeIfAbsent(
+                OpenAIVisionAutoTagActionlet.class.getName() + workflowActionClass.getId(),
+                k -> new CopyOnWriteArrayList<String>());
+    }
+
+
+    boolean shouldProcess(WorkflowProcessor processor) {
+
+        Optional<Field> altField = processor.getContentlet().getContentType().fields().stream().filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_ALT_FIELD_VAR)).findFirst();
+        Optional<Field> tagField = processor.getContentlet().getContentType().fields().stream().filter(f -> f.fieldVariablesMap().containsKey(AIVisionAPI.AI_VISION_TAG_FIELD_VAR)).findFirst();
+        if(altField.isEmpty() && tagField.isEmpty()){
+            return false;
+        }
 
         Optional<WorkflowActionClass> clazz = Try.of(() ->
                         APILocator.getWorkflowAPI().findActionClasses(processor.getAction())
@@ -60,13 +114,7 @@ public class OpenAIVisionAutoTagActionlet extends WorkFlowActionlet {
                                 .findFirst())
                 .getOrElse(Optional.empty());
 
-        if (clazz.isPresent() ) {
-            aiVisionAPI.tagImageIfNeeded(processor.getContentlet());
-            aiVisionAPI.addAltTextIfNeeded(processor.getContentlet());
-
-        }
-
-
+        return clazz.isPresent();
     }
 
 
@@ -0,0 +1,263 @@
+package com.dotcms.ai.client;
+
+import static org.junit.Assert.assertTrue;
+
+import com.dotcms.ai.translation.OpenAITranslationService;
+import com.dotcms.ai.translation.TranslationLoad;
+import com.dotcms.ai.vision.api.AIVisionAPI;
+import com.dotcms.ai.vision.api.VisionOutput;
+import com.dotcms.contenttype.model.field.Field;
+import com.dotcms.contenttype.model.field.ImmutableBinaryField;
+import com.dotcms.contenttype.model.field.ImmutableTextField;
+import com.dotcms.contenttype.model.field.ImmutableWysiwygField;
+import com.dotmarketing.beans.Host;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.dotmarketing.util.Logger;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Drives {@link AIVisionAPI} and {@link OpenAITranslationService} with synthetic contentlets - images and html content
+ * that are not in the db - against a {@link MockCompletionServer}, and fails if throughput, p99 latency, error rate or
+ * heap growth regress past the thresholds in {@code loadtest.properties}.  The plugin's completion client is pointed at
+ * the mock server, so the calls go through the same budget, lanes, deadlines, audit log and HTTP transport as in
+ * production.  Those read the host's app secrets and the plugin's tables, so this needs an initialized dotCMS (its
+ * config, db and es on the test classpath) and is skipped without one.  Only runs with {@code -Ploadtest}.
+ */
+public class CompletionLoadTest {
+
+    static final Properties config = new Properties();
+
+    static MockCompletionServer server;
+
+    static Path imageDir;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("dotai.loadtest"));
+        Assume.assumeTrue("the load test needs an initialized dotCMS", dotCMSReady());
+        try (InputStream in = CompletionLoadTest.class.getResourceAsStream("/loadtest.properties")) {
+            config.load(in);
+        }
+        final MockCompletionServer.Config serverConfig = new MockCompletionServer.Config();
+        serverConfig.medianLatencyMs = longProp("loadtest.server.medianLatencyMs");
+        serverConfig.latencySigma = doubleProp("loadtest.server.latencySigma");
+        serverConfig.errorRate = doubleProp("loadtest.server.errorRate");
+        serverConfig.rateLimitEvery = (int) longProp("loadtest.server.rateLimitEvery");
+        serverConfig.rateLimitBurst = (int) longProp("loadtest.server.rateLimitBurst");
+        server = new MockCompletionServer(serverConfig);
+        imageDir = Files.createTempDirectory("dotai-loadtest");
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        if (imageDir != null) {
+            try (Stream<Path> files = Files.list(imageDir)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(imageDir);
+        }
+    }
+
+    @Test
+    public void test_vision_throughput() throws Exception {
+        final Field imageField = ImmutableBinaryField.builder()
+                .name("Image")
+                .variable("image")
+                .contentTypeId("loadtest")
+                .build();
+        final long languageId = APILocator.getLanguageAPI().getDefaultLanguage().getId();
+        final int count = (int) longProp("loadtest.images");
+        final List<Callable<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // every image is different, so none of them is answered from the vision cache
+            final Path image = imageDir.resolve("image-" + i + ".png");
+            Files.write(image, syntheticImage(i));
+            final Contentlet contentlet = new Contentlet();
+            contentlet.setHost(Host.SYSTEM_HOST);
+            contentlet.setLanguageId(languageId);
+            contentlet.setBinary(imageField.variable(), image.toFile());
+            calls.add(() -> AIVisionAPI.instance.get()
+                    .readImage(contentlet, imageField, EnumSet.of(VisionOutput.ALT_TEXT, VisionOutput.TAGS))
+                    .containsKey(VisionOutput.ALT_TEXT));
+        }
+
+        final Result result = run("vision", calls, AIPriority.BULK, false);
+        assertTrue("vision images/min " + result.perMinute,
+                result.perMinute >= doubleProp("loadtest.min.imagesPerMinute"));
+        assertChecks(result);
+    }
+
+    @Test
+    public void test_translation_throughput() throws Exception {
+        final List<Field> fields = List.of(
+                ImmutableTextField.builder().name("Title").variable("title").contentTypeId("loadtest").build(),
+                ImmutableWysiwygField.builder().name("Body").variable("body").contentTypeId("loadtest").build());
+        final long languageId = APILocator.getLanguageAPI().getDefaultLanguage().getId();
+        final Language target = new Language(0, "xx", "XX", "Loadtest", "Loadtest");
+        final int count = (int) longProp("loadtest.translations");
+        final List<Callable<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // every value is different, so none of them is answered from translation memory
+            final Contentlet contentlet = new Contentlet();
+            contentlet.setHost(Host.SYSTEM_HOST);
+            contentlet.setLanguageId(languageId);
+            contentlet.setStringProperty("title", "Synthetic title " + i);
+            contentlet.setStringProperty("body", "<p>Lorem ipsum dolor sit amet " + i
+                    + ", <strong>consectetur</strong> adipiscing elit.</p><p>Sed do eiusmod tempor " + i + "</p>");
+            calls.add(() -> TranslationLoad.translate(contentlet, fields, target).keySet()
+                    .containsAll(List.of("title", "body")));
+        }
+
+        final Result result = run("translation", calls, AIPriority.INTERACTIVE, true);
+        assertChecks(result);
+    }
+
+    void assertChecks(Result result) {
+        assertTrue(result.name + " p99 " + result.p99, result.p99 <= longProp("loadtest.max.p99Ms"));
+        assertTrue(result.name + " error rate " + result.errorRate,
+                result.errorRate <= doubleProp("loadtest.max.errorRate"));
+        assertTrue(result.name + " heap growth MB " + result.heapGrowthMb,
+                result.heapGrowthMb <= longProp("loadtest.max.heapGrowthMb"));
+        assertTrue(result.name + " opened " + result.connections + " connections for " + result.threads
+                + " workers", result.connections <= result.threads * 2L);
+    }
+
+    /**
+     * Runs the calls from {@code loadtest.threads} callers in the priority lane, each returning false or throwing
+     * when it did not get its answer
+     */
+    Result run(String name, List<Callable<Boolean>> calls, AIPriority priority, boolean gzip) throws Exception {
+        final int threads = (int) longProp("loadtest.threads");
+        final HttpCompletionTransport transport = new HttpCompletionTransport(server.url(), "mock-key", gzip);
+        AICompletionClient.instance.get().overrideTransport(transport);
+        // the APIs block until the answer is in, so the callers are what limits the number of calls in flight
+        final ExecutorService callers = Executors.newFixedThreadPool(threads);
+        final LatencyTracker latencies = new LatencyTracker(calls.size());
+        final AtomicLong errors = new AtomicLong();
+        final long requestsBefore = server.requests.get();
+        final int connectionsBefore = server.connections.size();
+
+        System.gc();
+        final long heapBefore = usedHeap();
+        final long start = System.currentTimeMillis();
+        try {
+            final List<Future<Object>> futures = new ArrayList<>();
+            for (Callable<Boolean> call : calls) {
+                futures.add(callers.submit(() -> AIPriority.withPriority(priority, () -> {
+                    final long callStart = System.currentTimeMillis();
+                    try {
+                        if (!call.call()) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies.record(System.currentTimeMillis() - callStart);
+                    return null;
+                })));
+            }
+            for (Future<Object> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            callers.shutdownNow();
+            AICompletionClient.instance.get().overrideTransport(null);
+        }
+        final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+        final Result result = new Result();
+        result.name = name;
+        result.threads = threads;
+        result.perMinute = calls.size() * 60_000d / elapsed;
+        result.p50 = latencies.percentile(50);
+        result.p99 = latencies.percentile(99);
+        result.errorRate = errors.get() / (double) calls.size();
+        result.heapGrowthMb = Math.max(0, usedHeap() - heapBefore) / (1024 * 1024);
+        result.apiCalls = server.requests.get() - requestsBefore;
+        result.connections = server.connections.size() - connectionsBefore;
+
+        Logger.info(CompletionLoadTest.class, String.format(
+                "[loadtest] %s: %d calls in %dms, %.0f/min, p50 %dms, p99 %dms, errors %.2f%% (429s so far %d), "
+                        + "heap +%dMB, connections %d, transport %s",
+                name, result.apiCalls, elapsed, result.perMinute, result.p50, result.p99, result.errorRate * 100,
+                server.rateLimited.get(), result.heapGrowthMb, result.connections, transport.getMetrics()));
+        return result;
+    }
+
+    static class Result {
+        String name;
+        int threads;
+        double perMinute;
+        long p50;
+        long p99;
+        double errorRate;
+        long heapGrowthMb;
+        long apiCalls;
+        long connections;
+    }
+
+    /**
+     * Vavr's Try rethrows the linkage errors a dotCMS class throws when it is loaded without dotCMS' config, so this
+     * catches everything itself
+     */
+    static boolean dotCMSReady() {
+        try {
+            return APILocator.getLanguageAPI().getDefaultLanguage() != null;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    static byte[] syntheticImage(int seed) throws Exception {
+        final Random random = new Random(seed);
+        final BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static long longProp(String key) {
+        return Long.parseLong(config.getProperty(key).trim());
+    }
+
+    static double doubleProp(String key) {
+        return Double.parseDouble(config.getProperty(key).trim());
+    }
+
+}
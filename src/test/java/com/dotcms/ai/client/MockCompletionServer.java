@@ -0,0 +1,159 @@
+package com.dotcms.ai.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An embedded OpenAI compatible {@code /v1/chat/completions} endpoint for load tests.  Latency is log-normally
+ * distributed around a median, a share of requests fail with a 500, and bursts of 429s are returned every so many
+ * requests.  Vision prompts (anything with an {@code image_url}) get alt text and tags back, everything else gets
+ * its source json echoed back as the "translation".
+ */
+class MockCompletionServer implements AutoCloseable {
+
+    static class Config {
+        long medianLatencyMs = 50;
+        /**
+         * sigma of the log-normal latency distribution, 1.0 gives a p99 of roughly 10x the median
+         */
+        double latencySigma = 0.8;
+        double errorRate = 0.0;
+        /**
+         * every {@code rateLimitEvery} requests, the next {@code rateLimitBurst} requests get a 429
+         */
+        int rateLimitEvery = 0;
+        int rateLimitBurst = 0;
+        int promptTokens = 800;
+        int completionTokens = 60;
+    }
+
+    private final Config config;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Random random = new Random(42);
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong rateLimited = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong gzippedRequests = new AtomicLong();
+    final AtomicLong bytesReceived = new AtomicLong();
+    /**
+     * each client connection has its own remote port, so this is the number of connections opened
+     */
+    final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    MockCompletionServer(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final long requestNumber = requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress().getPort());
+
+        final boolean gzipped = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        final String body;
+        try (InputStream in = gzipped ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            final byte[] bytes = in.readAllBytes();
+            bytesReceived.addAndGet(bytes.length);
+            body = new String(bytes, StandardCharsets.UTF_8);
+        }
+        if (gzipped) {
+            gzippedRequests.incrementAndGet();
+        }
+
+        sleep(latency());
+
+        if (config.rateLimitEvery > 0 && requestNumber % config.rateLimitEvery < config.rateLimitBurst) {
+            rateLimited.incrementAndGet();
+            respond(exchange, 429, "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"requests\"}}");
+            return;
+        }
+        if (nextDouble() < config.errorRate) {
+            failed.incrementAndGet();
+            respond(exchange, 500, "{\"error\":{\"message\":\"mock server error\"}}");
+            return;
+        }
+
+        final String content = body.contains("\"image_url\"")
+                ? "{\"altText\":\"A synthetic test image\",\"tags\":[\"test\",\"synthetic\",\"noise\"]}"
+                : sourceJson(body);
+        respond(exchange, 200, "{\"id\":\"chatcmpl-mock-" + requestNumber + "\",\"object\":\"chat.completion\","
+                + "\"model\":\"mock-model\",\"choices\":[{\"index\":0,\"finish_reason\":\"stop\",\"message\":"
+                + "{\"role\":\"assistant\",\"content\":" + quote(content) + "}}],\"usage\":{\"prompt_tokens\":"
+                + config.promptTokens + ",\"completion_tokens\":" + config.completionTokens + ",\"total_tokens\":"
+                + (config.promptTokens + config.completionTokens) + "}}");
+    }
+
+    /**
+     * The translation prompt wraps the source json in dashed separators; echo it back as the translation
+     */
+    static String sourceJson(String body) {
+        final String marker = "-----------------";
+        final int start = body.lastIndexOf(marker, body.lastIndexOf(marker) - 1);
+        final int end = body.lastIndexOf(marker);
+        if (start < 0 || end <= start) {
+            return "{}";
+        }
+        return body.substring(start + marker.length(), end)
+                .replace("\\n", "")
+                .replace("\\\"", "\"")
+                .replace("\\/", "/")
+                .trim();
+    }
+
+    static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private synchronized long latency() {
+        return (long) (config.medianLatencyMs * Math.exp(config.latencySigma * random.nextGaussian()));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.dotcms.ai.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PriorityLaneExecutorTest {
+
+    PriorityLaneExecutor executor;
+
+    @Before
+    public void setup() {
+        executor = new PriorityLaneExecutor("dotai-test", 1);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    /**
+     * A losing hedge is cancelled with cancel(true), which interrupts the worker running it - the worker has to
+     * survive that and keep taking work.
+     */
+    @Test
+    public void test_worker_survives_cancel_with_interrupt() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Future<String> running = executor.submit(() -> {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return "slow";
+        }, AIPriority.INTERACTIVE);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        running.cancel(true);
+
+        for (int i = 0; i < 3; i++) {
+            final int n = i;
+            final Future<Integer> next = executor.submit(() -> n, AIPriority.BULK);
+            assertEquals(Integer.valueOf(n), next.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * An interrupt a task leaves behind must not stop the worker either
+     */
+    @Test
+    public void test_worker_survives_interrupt_from_finished_task() throws Exception {
+        final Future<String> first = executor.submit(() -> {
+            Thread.currentThread().interrupt();
+            return "done";
+        }, AIPriority.INTERACTIVE);
+        assertEquals("done", first.get(5, TimeUnit.SECONDS));
+
+        final Future<String> second = executor.submit(() -> "next", AIPriority.INTERACTIVE);
+        assertEquals("next", second.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Blocks the single worker with an INTERACTIVE task, queues the given number of tasks per lane and releases the
+     * worker, returning the lanes in the order the tasks ran, the blocking task first.  Everything is queued before
+     * the worker takes the next task, so the order only depends on the dispatch rules.
+     */
+    List<AIPriority> dispatchOrder(int interactive, int publish, int bulk) throws Exception {
+        final List<AIPriority> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor.submit(() -> {
+            order.add(AIPriority.INTERACTIVE);
+            blocked.countDown();
+            return gate.await(5, TimeUnit.SECONDS);
+        }, AIPriority.INTERACTIVE);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        final List<Future<AIPriority>> futures = new ArrayList<>();
+        for (AIPriority lane : List.of(AIPriority.BULK, AIPriority.PUBLISH, AIPriority.INTERACTIVE)) {
+            final int count = lane == AIPriority.BULK ? bulk : lane == AIPriority.PUBLISH ? publish : interactive;
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> {
+                    order.add(lane);
+                    return lane;
+                }, lane));
+            }
+        }
+        gate.countDown();
+        for (Future<AIPriority> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        return order;
+    }
+
+    /**
+     * With an empty window the lower lanes first get their minimum share, after that the higher lanes are served
+     * first: INTERACTIVE before PUBLISH before BULK
+     */
+    @Test
+    public void test_higher_lanes_served_first_once_shares_are_met() throws Exception {
+        final List<AIPriority> expected = new ArrayList<>();
+        expected.add(AIPriority.INTERACTIVE);
+        expected.addAll(Collections.nCopies(20, AIPriority.PUBLISH));
+        expected.addAll(Collections.nCopies(10, AIPriority.BULK));
+        expected.addAll(Collections.nCopies(30, AIPriority.INTERACTIVE));
+        expected.addAll(Collections.nCopies(10, AIPriority.PUBLISH));
+        expected.addAll(Collections.nCopies(20, AIPriority.BULK));
+
+        assertEquals(expected, dispatchOrder(30, 30, 30));
+    }
+
+    /**
+     * While INTERACTIVE has far more work queued, every window of the last 100 dispatches still gives PUBLISH and
+     * BULK their minimum share - less one, a lane is only served once it has fallen below its share, and the
+     * dispatch that slides out of the window can be its own
+     */
+    @Test
+    public void test_lower_lanes_get_min_share_of_every_window() throws Exception {
+        final List<AIPriority> order = dispatchOrder(1000, 300, 300);
+
+        // the lower lanes keep work queued for the first 1000 dispatches, the first window fills up from empty
+        for (int start = 1; start + PriorityLaneExecutor.WINDOW <= 1000; start++) {
+            final List<AIPriority> window = order.subList(start, start + PriorityLaneExecutor.WINDOW);
+            assertTrue("PUBLISH starved at " + start, Collections.frequency(window, AIPriority.PUBLISH)
+                    >= AIPriority.PUBLISH.minSharePercent * PriorityLaneExecutor.WINDOW / 100 - 1);
+            assertTrue("BULK starved at " + start, Collections.frequency(window, AIPriority.BULK)
+                    >= AIPriority.BULK.minSharePercent * PriorityLaneExecutor.WINDOW / 100 - 1);
+            assertTrue("INTERACTIVE not served first at " + start, Collections.frequency(window,
+                    AIPriority.INTERACTIVE) >= 60);
+        }
+    }
+
+}
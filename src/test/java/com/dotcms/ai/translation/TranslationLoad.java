@@ -0,0 +1,24 @@
+package com.dotcms.ai.translation;
+
+import com.dotcms.contenttype.model.field.Field;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets the load test translate contentlets that are not in the db - the same glossary lookup, segmenting, memory,
+ * routing and model requests {@link OpenAITranslationService#translateContentAsync} runs for each language, without
+ * checking out and saving the translated version.
+ */
+public class TranslationLoad {
+
+    public static Map<String, String> translate(Contentlet contentlet, List<Field> fields, Language targetLanguage) {
+        final OpenAITranslationService service = OpenAITranslationService.INSTANCE.get();
+        final Language sourceLang = APILocator.getLanguageAPI().getLanguage(contentlet.getLanguageId());
+        return service.translateSegments(contentlet.getHost(), sourceLang, targetLanguage,
+                service.glossaryPrefix(contentlet), service.sourceValues(contentlet, fields));
+    }
+
+}